@@ -1,14 +1,25 @@
 package benjaminkomen.jwiki.core;
 
-import benjaminkomen.jwiki.util.FL;
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
 import okhttp3.*;
+import okio.BufferedSink;
 
 import java.io.IOException;
 import java.net.Proxy;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -23,6 +34,17 @@ class ApiClient {
      */
     private static final MediaType OCTETSTREAM = MediaType.parse("application/octet-stream");
 
+    /**
+     * The maximum length of a {@code GET} url. Read requests with longer urls are sent as a form-data {@code POST}
+     * instead, since servers and proxies commonly reject urls longer than a few kilobytes.
+     */
+    private static final int MAX_GET_URL_LENGTH = 4096;
+
+    /**
+     * The url parameters which are kept in the url when a read request is sent as a {@code POST}.
+     */
+    private static final Set<String> URL_PARAMS = Set.of("action", "format");
+
     /**
      * HTTP client used for all requests.
      */
@@ -33,27 +55,51 @@ class ApiClient {
      */
     private Wiki wiki;
 
+    /**
+     * The {@code GET} requests made with {@link #basicGETJson(Map, Collection)} which are currently in flight, keyed by
+     * their sorted parameters and selected keys.
+     */
+    private final ConcurrentHashMap<List<Object>, Flight> inFlight = new ConcurrentHashMap<>();
+
     /**
      * Constructor, create a new ApiClient for a Wiki instance.
      *
-     * @param wiki  The Wiki object this ApiClient is associated with.
-     * @param proxy The proxy to use. Optional param - set null to disable.
+     * @param wiki     The Wiki object this ApiClient is associated with.
+     * @param settings The HTTP settings to create the underlying OkHttpClient with.
      */
-    protected ApiClient(Wiki wiki, Proxy proxy) {
+    protected ApiClient(Wiki wiki, Settings settings) {
         this.wiki = wiki;
 
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), settings.maxRequestsPerHost));
+        dispatcher.setMaxRequestsPerHost(settings.maxRequestsPerHost);
+
         OkHttpClient.Builder builder = new OkHttpClient.Builder()
                 .cookieJar(new JwikiCookieJar())
-                .readTimeout(2, TimeUnit.MINUTES)
-                .protocols(List.of(Protocol.HTTP_1_1));
+                .addInterceptor(this::retryReads)
+                .addInterceptor(new RateLimiter(settings.rateLimits, settings.defaultRateLimit, settings.maxlag))
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(settings.maxIdleConnections, settings.keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .connectTimeout(settings.connectTimeout)
+                .readTimeout(settings.readTimeout)
+                .protocols(settings.http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1));
 
-        if (proxy != null) {
-            builder.proxy(proxy);
+        if (settings.proxy != null) {
+            builder.proxy(settings.proxy);
         }
 
         client = builder.build();
     }
 
+    /**
+     * Gets the OkHttpClient this ApiClient sends its requests with.
+     *
+     * @return The OkHttpClient of this ApiClient.
+     */
+    protected OkHttpClient getClient() {
+        return client;
+    }
+
     /**
      * Constructor, derives an ApiClient from a source Wiki. Useful for {@code centralauth} login/credential sharing.
      *
@@ -67,13 +113,36 @@ class ApiClient {
         JwikiCookieJar cl = (JwikiCookieJar) client.cookieJar();
 
         Map<String, String> l = new HashMap<>();
-        cl.cj.get(from.getWikiConfiguration().getHostname()).forEach((k, v) -> {
+        cl.getCookies(from.getWikiConfiguration().getHostname()).forEach((k, v) -> {
             if (k.contains("centralauth")) {
                 l.put(k, v);
             }
         });
 
-        cl.cj.put(wiki.getWikiConfiguration().getHostname(), l);
+        cl.setCookies(wiki.getWikiConfiguration().getHostname(), l);
+    }
+
+    /**
+     * Gets a copy of all cookies stored by this ApiClient.
+     *
+     * @return The cookies of this ApiClient, in the form [ host : [ key : value ] ].
+     */
+    protected Map<String, Map<String, String>> getCookies() {
+        JwikiCookieJar cl = (JwikiCookieJar) client.cookieJar();
+
+        Map<String, Map<String, String>> m = new HashMap<>();
+        cl.cj.keySet().forEach(host -> m.put(host, cl.getCookies(host)));
+
+        return m;
+    }
+
+    /**
+     * Replaces the cookies stored by this ApiClient for each host in {@code cookies}.
+     *
+     * @param cookies The cookies to set, in the form [ host : [ key : value ] ].
+     */
+    protected void setCookies(Map<String, Map<String, String>> cookies) {
+        cookies.forEach(((JwikiCookieJar) client.cookieJar())::setCookies);
     }
 
     /**
@@ -90,14 +159,114 @@ class ApiClient {
     }
 
     /**
-     * Basic {@code GET} to the MediaWiki api.
+     * Creates a Request which reads from the MediaWiki api. This is a {@code GET}, unless its url would be longer than
+     * {@link #MAX_GET_URL_LENGTH}, in which case it is a form-data {@code POST} (which the api accepts for reads too).
+     *
+     * @param params Any URL parameters (not URL-encoded).
+     * @return A new read Request.
+     */
+    private Request readReq(Map<String, String> params) {
+        Request.Builder rb = startReq(params);
+        if (rb.build().url().toString().length() <= MAX_GET_URL_LENGTH) {
+            return rb.get().build();
+        }
+
+        Map<String, String> urlParams = new HashMap<>();
+        FormBody.Builder fb = new FormBody.Builder();
+        params.forEach((k, v) -> {
+            if (URL_PARAMS.contains(k)) {
+                urlParams.put(k, v);
+            } else {
+                fb.add(k, v);
+            }
+        });
+
+        return startReq(urlParams).post(fb.build()).tag(ReadRequest.class, ReadRequest.INSTANCE).build();
+    }
+
+    /**
+     * Retries read requests which failed with a network error, a transient server error or because they were
+     * throttled, according to the Wiki's RetryPolicy. Other requests are passed through unchanged. This is the only
+     * place read requests are retried; {@link RateLimiter} just pauses throttled hosts.
+     *
+     * @param chain The interceptor chain of the request
+     * @return The Response to the request
+     * @throws IOException Network error, if the request could not be retried
+     */
+    private Response retryReads(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!"GET".equals(request.method()) && request.tag(ReadRequest.class) == null) {
+            return chain.proceed(request);
+        }
+
+        // a cancelled call fails with a plain IOException, which must not be retried
+        Call call = chain.call();
+        RetryPolicy policy = wiki.getWikiConfiguration().getRetryPolicy();
+        return policy.execute(() -> {
+                    if (call.isCanceled()) {
+                        throw new IOException("Canceled");
+                    }
+                    return chain.proceed(request);
+                }, e -> !call.isCanceled() && policy.isRetryable(e), r -> !call.isCanceled() && policy.isRetryable(r),
+                r -> Objects.requireNonNullElse(RetryPolicy.retryAfter(r), Duration.ZERO), Response::close);
+    }
+
+    /**
+     * Basic {@code GET} to the MediaWiki api. Sent as a {@code POST} if the url would be too long.
      *
      * @param params Any URL parameters (not URL-encoded).
      * @return A Response object with the result of this Request.
      * @throws IOException Network error
      */
     protected Response basicGET(Map<String, String> params) throws IOException {
-        return client.newCall(startReq(params).get().build()).execute();
+        return client.newCall(readReq(params)).execute();
+    }
+
+    /**
+     * {@code GET} to the MediaWiki api which decodes the response as a JsonObject. Concurrent calls with the same
+     * parameters share a single request: the first caller sends it, and the others wait for its result and receive a
+     * copy of it.
+     *
+     * @param params Any URL parameters (not URL-encoded).
+     * @param keys   The top-level keys of the response to keep. Optional, set null to keep all of them.
+     * @return A JsonObject with the selected top-level values of the response.
+     * @throws IOException Network error, or if the response was not a JsonObject.
+     */
+    protected JsonObject basicGETJson(Map<String, String> params, Collection<String> keys) throws IOException {
+        List<Object> key = List.of(new TreeMap<>(params), keys == null ? "" : new TreeSet<>(keys));
+
+        Flight own = new Flight();
+        Flight flight = inFlight.compute(key, (k, v) -> {
+            if (v == null) {
+                return own;
+            }
+
+            v.followers++;
+            return v;
+        });
+
+        if (flight != own) {
+            try {
+                return flight.result.join().deepCopy();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+
+        JsonObject result;
+        try {
+            result = GSONP.parseResponseBody(basicGET(params).body(), keys);
+        } catch (IOException | RuntimeException e) {
+            inFlight.remove(key);
+            own.result.completeExceptionally(e);
+            throw e;
+        }
+
+        // once removed, no more callers can join this request; only copy the result if some already did
+        inFlight.remove(key);
+        own.result.complete(own.followers > 0 ? result.deepCopy() : result);
+
+        return result;
     }
 
     /**
@@ -112,7 +281,68 @@ class ApiClient {
         FormBody.Builder fb = new FormBody.Builder();
         form.forEach(fb::add);
 
-        return client.newCall(startReq(params).post(fb.build()).build()).execute();
+        return client.newCall(startReq(params).post(new WriteBody(fb.build())).build()).execute();
+    }
+
+    /**
+     * Asynchronous {@code GET} to the MediaWiki api. The request is dispatched on OkHttp's thread pool, so the calling
+     * thread is never blocked. Rate limiting and retry delays still block the dispatcher thread running the request.
+     *
+     * @param params Any URL parameters (not URL-encoded).
+     * @return A CompletableFuture which completes with the Response, or exceptionally on network error.
+     */
+    protected CompletableFuture<Response> basicGETAsync(Map<String, String> params) {
+        return enqueue(readReq(params));
+    }
+
+    /**
+     * Asynchronous form-data {@code POST} to the MediaWiki api. The request is dispatched on OkHttp's thread pool, so
+     * the calling thread is never blocked. Rate limiting and retry delays still block the dispatcher thread running the
+     * request.
+     *
+     * @param params Any URL parameters (not URL-encoded).
+     * @param form   The Key-Value form parameters to {@code POST}.
+     * @return A CompletableFuture which completes with the Response, or exceptionally on network error.
+     */
+    protected CompletableFuture<Response> basicPOSTAsync(Map<String, String> params, Map<String, String> form) {
+        FormBody.Builder fb = new FormBody.Builder();
+        form.forEach(fb::add);
+
+        return enqueue(startReq(params).post(new WriteBody(fb.build())).build());
+    }
+
+    /**
+     * Enqueues a Request with OkHttp and bridges its callback to a CompletableFuture. Cancelling the returned future
+     * cancels the underlying Call.
+     *
+     * @param request The Request to enqueue
+     * @return A CompletableFuture which completes with the Response, or exceptionally on network error.
+     */
+    private CompletableFuture<Response> enqueue(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response) {
+                if (!future.complete(response)) {
+                    response.close();
+                }
+            }
+        });
+
+        future.whenComplete((r, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        return future;
     }
 
     /**
@@ -131,21 +361,153 @@ class ApiClient {
 
         mpb.addFormDataPart("chunk", fn, RequestBody.create(chunk, OCTETSTREAM));
 
-        Request r = startReq(params).post(mpb.build()).build();
+        Request r = startReq(params).post(new WriteBody(mpb.build())).build();
         return client.newCall(r).execute();
     }
 
     /**
-     * Basic CookieJar policy for use with jwiki.
+     * HTTP settings used to create the OkHttpClient of a new ApiClient. The defaults are tuned for many concurrent
+     * requests to a single wiki.
+     *
+     * @author Fastily
+     */
+    protected static class Settings {
+        /**
+         * The proxy to use. Optional - null disables.
+         */
+        Proxy proxy;
+
+        /**
+         * Flag indicating whether HTTP/2 may be negotiated. Requests are multiplexed over a single connection when the
+         * server supports it; HTTP/1.1 is used otherwise.
+         */
+        boolean http2 = true;
+
+        /**
+         * The maximum number of idle connections to keep in the connection pool.
+         */
+        int maxIdleConnections = 16;
+
+        /**
+         * How long an idle connection is kept alive in the connection pool.
+         */
+        Duration keepAlive = Duration.ofMinutes(5);
+
+        /**
+         * The maximum number of concurrent requests to a single host. Requests beyond this are queued by OkHttp.
+         */
+        int maxRequestsPerHost = 64;
+
+        /**
+         * The connect timeout for new connections.
+         */
+        Duration connectTimeout = Duration.ofSeconds(10);
+
+        /**
+         * The read timeout for connections.
+         */
+        Duration readTimeout = Duration.ofMinutes(2);
+
+        /**
+         * Client-side rate limits, in requests per second, keyed by API action (e.g. {@code edit}, {@code query}).
+         */
+        Map<String, Double> rateLimits = new HashMap<>();
+
+        /**
+         * The client-side rate limit, in requests per second, of API actions not in {@code rateLimits}. Values &le; 0
+         * mean unlimited.
+         */
+        double defaultRateLimit = 0;
+
+        /**
+         * The {@code maxlag} value, in seconds, to send with each request. Negative values (the default) disable
+         * {@code maxlag}.
+         */
+        int maxlag = -1;
+    }
+
+    /**
+     * The body of a {@code POST} which may change a Wiki. It is marked as one-shot, so that OkHttp never silently sends
+     * it again once it has started sending it; the server may already have performed the action. Requests which could
+     * not be sent at all, e.g. because the connection failed, are still retried.
+     *
+     * @author Fastily
+     */
+    private static final class WriteBody extends RequestBody {
+        /**
+         * The body to send.
+         */
+        private final RequestBody body;
+
+        /**
+         * Constructor, creates a new WriteBody
+         *
+         * @param body The body to send.
+         */
+        private WriteBody(RequestBody body) {
+            this.body = body;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            body.writeTo(sink);
+        }
+
+        @Override
+        public boolean isOneShot() {
+            return true;
+        }
+    }
+
+    /**
+     * Tags read requests which are sent as a {@code POST}, so that they are retried like {@code GET} requests.
+     *
+     * @author Fastily
+     */
+    private enum ReadRequest {
+        INSTANCE
+    }
+
+    /**
+     * A {@code GET} request which is in flight, and which concurrent callers with the same parameters may wait on.
+     *
+     * @author Fastily
+     */
+    private static final class Flight {
+        /**
+         * The decoded response to the request.
+         */
+        private final CompletableFuture<JsonObject> result = new CompletableFuture<>();
+
+        /**
+         * The number of callers waiting on this request, besides the one sending it. Only modified while this Flight is
+         * being computed into {@code inFlight}.
+         */
+        private int followers;
+    }
+
+    /**
+     * Basic CookieJar policy for use with jwiki. Safe for use by concurrent requests; each host has its own lock, and
+     * the cookies sent with a request are cached until a cookie for that host actually changes.
      *
      * @author Fastily
      */
     private static class JwikiCookieJar implements CookieJar {
 
         /**
-         * Internal Map tracking cookies. Legend - [ domain : [ key : value ] ].
+         * Internal Map tracking cookies. Legend - [ domain : cookies ].
          */
-        private Map<String, Map<String, String>> cj = new HashMap<>();
+        private final ConcurrentHashMap<String, HostCookies> cj = new ConcurrentHashMap<>();
 
         private JwikiCookieJar() {
             // no-args constructor
@@ -156,13 +518,9 @@ class ApiClient {
          */
         @Override
         public void saveFromResponse(HttpUrl url, List<Cookie> cookies) {
-            String host = url.host();
-            if (!cj.containsKey(host))
-                cj.put(host, new HashMap<>());
-
-            Map<String, String> m = cj.get(host);
-            for (Cookie c : cookies)
-                m.put(c.name(), c.value());
+            if (!cookies.isEmpty()) {
+                cj.computeIfAbsent(url.host(), HostCookies::new).putAll(cookies);
+            }
         }
 
         /**
@@ -170,10 +528,146 @@ class ApiClient {
          */
         @Override
         public List<Cookie> loadForRequest(HttpUrl url) {
-            String host = url.host();
-            return !cj.containsKey(host) ? new ArrayList<>()
-                    : FL.toArrayList(cj.get(host).entrySet().stream()
-                    .map(e -> new Cookie.Builder().name(e.getKey()).value(e.getValue()).domain(host).build()));
+            HostCookies hc = cj.get(url.host());
+            return hc == null ? Collections.emptyList() : hc.current();
+        }
+
+        /**
+         * Gets a copy of the cookies stored for a host.
+         *
+         * @param host The host to get cookies for
+         * @return The cookies of {@code host}, in the form [ key : value ].
+         */
+        private Map<String, String> getCookies(String host) {
+            HostCookies hc = cj.get(host);
+            return hc == null ? new HashMap<>() : hc.snapshot();
+        }
+
+        /**
+         * Replaces the cookies stored for a host.
+         *
+         * @param host    The host to set cookies for
+         * @param cookies The cookies to set, in the form [ key : value ].
+         */
+        private void setCookies(String host, Map<String, String> cookies) {
+            HostCookies hc = new HostCookies(host);
+            hc.putAll(cookies);
+
+            cj.put(host, hc);
+        }
+    }
+
+    /**
+     * The cookies stored for a single host.
+     *
+     * @author Fastily
+     */
+    private static final class HostCookies {
+        /**
+         * The host these cookies belong to.
+         */
+        private final String host;
+
+        /**
+         * The cookies for {@code host}. Legend - [ key : cookie ]. Guarded by {@code this}.
+         */
+        private final Map<String, Cookie> values = new HashMap<>();
+
+        /**
+         * Immutable list of the Cookie objects sent with each request. Rebuilt whenever {@code values} changes or one of
+         * them expires.
+         */
+        private volatile List<Cookie> cookies = Collections.emptyList();
+
+        /**
+         * The time, in milliseconds since the epoch, at which the first of {@code cookies} expires.
+         */
+        private volatile long nextExpiry = Long.MAX_VALUE;
+
+        /**
+         * Constructor, creates an empty HostCookies.
+         *
+         * @param host The host these cookies belong to.
+         */
+        private HostCookies(String host) {
+            this.host = host;
+        }
+
+        /**
+         * Stores cookies received from {@code host}. Expired cookies, which is how servers delete cookies, remove the
+         * stored cookie of the same name. The cached Cookie list is only rebuilt if something changed.
+         *
+         * @param received The cookies to store
+         */
+        private synchronized void putAll(List<Cookie> received) {
+            long now = System.currentTimeMillis();
+
+            boolean changed = false;
+            for (Cookie c : received) {
+                if (c.expiresAt() <= now) {
+                    changed |= values.remove(c.name()) != null;
+                } else {
+                    Cookie old = values.put(c.name(), c);
+                    changed |= old == null || !old.value().equals(c.value()) || old.expiresAt() != c.expiresAt();
+                }
+            }
+
+            if (changed) {
+                rebuild(now);
+            }
+        }
+
+        /**
+         * Stores cookies which were saved earlier, e.g. in a session file. These are kept until they are replaced.
+         *
+         * @param saved The cookies to store, in the form [ key : value ].
+         */
+        private synchronized void putAll(Map<String, String> saved) {
+            saved.forEach((k, v) -> values.put(k, new Cookie.Builder().name(k).value(v).domain(host).build()));
+            rebuild(System.currentTimeMillis());
+        }
+
+        /**
+         * Gets the cookies to send with a request to {@code host}, dropping any which expired since they were stored.
+         *
+         * @return The unexpired cookies
+         */
+        private List<Cookie> current() {
+            if (System.currentTimeMillis() >= nextExpiry) {
+                synchronized (this) {
+                    long now = System.currentTimeMillis();
+                    if (now >= nextExpiry) {
+                        rebuild(now);
+                    }
+                }
+            }
+
+            return cookies;
+        }
+
+        /**
+         * Drops expired cookies and rebuilds the cached Cookie list. Must hold the lock of {@code this}.
+         *
+         * @param now The current time, in milliseconds since the epoch.
+         */
+        private void rebuild(long now) {
+            values.values().removeIf(c -> c.expiresAt() <= now);
+
+            cookies = List.copyOf(values.values());
+            nextExpiry = values.values().stream().mapToLong(Cookie::expiresAt).min().orElse(Long.MAX_VALUE);
+        }
+
+        /**
+         * Gets a copy of the cookies stored for {@code host}.
+         *
+         * @return The cookies, in the form [ key : value ].
+         */
+        private synchronized Map<String, String> snapshot() {
+            rebuild(System.currentTimeMillis());
+
+            Map<String, String> m = new HashMap<>();
+            values.forEach((k, v) -> m.put(k, v.value()));
+            return m;
         }
     }
 }
\ No newline at end of file
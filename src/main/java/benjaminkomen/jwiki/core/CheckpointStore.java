@@ -0,0 +1,104 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * On-disk store of the continuation state of long-running enumerations, so that an enumeration which was interrupted
+ * (e.g. by a crash or a deploy) can resume where it stopped instead of starting over. Each checkpoint is stored as one
+ * JSON file, named after the checkpoint, and is removed once its enumeration completes.
+ *
+ * @author Fastily
+ * @see Wiki.Builder#withCheckpoints(Path)
+ */
+public final class CheckpointStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointStore.class);
+
+    /**
+     * The directory to store checkpoints in.
+     */
+    private final Path directory;
+
+    /**
+     * Constructor, creates a new CheckpointStore.
+     *
+     * @param directory The directory to store checkpoints in. This is created if it does not exist.
+     */
+    public CheckpointStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Reads a checkpoint.
+     *
+     * @param name The name of the checkpoint
+     * @return The checkpoint, or null if it does not exist or could not be read.
+     */
+    protected JsonObject load(String name) {
+        Path file = fileOf(name);
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            return JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+        } catch (Exception e) {
+            LOG.warn("Ignoring unreadable checkpoint {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a checkpoint. The checkpoint is written to a temporary file first and then moved into place, so that a
+     * crash while writing never leaves a partially written checkpoint behind.
+     *
+     * @param name       The name of the checkpoint
+     * @param checkpoint The checkpoint to store
+     */
+    protected void save(String name, JsonObject checkpoint) {
+        Path file = fileOf(name);
+
+        try {
+            Files.createDirectories(directory);
+
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.writeString(tmp, GSONP.getGson().toJson(checkpoint), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write checkpoint {}", file, e);
+        }
+    }
+
+    /**
+     * Removes a checkpoint, so that the next enumeration using it starts from the beginning.
+     *
+     * @param name The name of the checkpoint
+     */
+    public void clear(String name) {
+        try {
+            Files.deleteIfExists(fileOf(name));
+        } catch (IOException e) {
+            LOG.warn("Could not remove checkpoint {}", name, e);
+        }
+    }
+
+    /**
+     * Derives the file of a checkpoint.
+     *
+     * @param name The name of the checkpoint
+     * @return The file which stores the checkpoint named {@code name}.
+     */
+    private Path fileOf(String name) {
+        return directory.resolve(name.replaceAll("[^A-Za-z0-9.-]", "_") + ".json");
+    }
+}
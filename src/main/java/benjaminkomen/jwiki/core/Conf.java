@@ -6,6 +6,11 @@ import lombok.Builder;
 import lombok.Getter;
 import okhttp3.HttpUrl;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Per-Wiki configurable settings.
  *
@@ -15,6 +20,11 @@ import okhttp3.HttpUrl;
 @Builder
 @AllArgsConstructor(access = AccessLevel.PUBLIC)
 public final class Conf {
+    /**
+     * The maximum number of time slices which partitioned enumerations query at the same time.
+     */
+    public static final int PARTITION_PARALLELISM = 8;
+
     /**
      * Toggles logging of debug information to std err. Disabled (false) by default.
      */
@@ -51,6 +61,64 @@ public final class Conf {
      */
     private int maxResultLimit;
 
+    /**
+     * The maximum number of titles which may be passed in a single multi-title query, see {@link MQuery}.
+     */
+    private int groupQueryMax;
+
+    /**
+     * Flag indicating whether the logged in user has the {@code apihighlimits} right, which raises
+     * {@code maxResultLimit} and {@code groupQueryMax} tenfold.
+     */
+    private boolean apiHighLimits;
+
+    /**
+     * The maximum number of multi-title query groups which {@link MQuery} may dispatch concurrently. A value of 1 (the
+     * default) means that groups are queried sequentially.
+     */
+    private int queryParallelism;
+
+    /**
+     * Runs concurrent query groups on at most {@code queryParallelism} threads, shared by all queries of the Wiki.
+     * Created on first use. Idle threads are stopped, so an unused executor costs nothing.
+     */
+    private ThreadPoolExecutor queryExecutor;
+
+    /**
+     * Runs the time slices of partitioned enumerations (e.g. {@link Wiki#streamLogs(String, String, String,
+     * java.time.Instant, java.time.Instant, int)}) on at most {@link #PARTITION_PARALLELISM} threads, shared by all
+     * such enumerations of the Wiki. Created on first use.
+     */
+    private ThreadPoolExecutor partitionExecutor;
+
+    /**
+     * Flag indicating whether {@link WQuery} should send the next continuation query in the background as soon as the
+     * current one has been received. Disabled (false) by default.
+     */
+    private boolean prefetchContinuations;
+
+    /**
+     * Decides how failed requests and actions are retried.
+     */
+    private RetryPolicy retryPolicy;
+
+    /**
+     * Stores the continuation state of enumerations which have a checkpoint, so that they can be resumed. Null if
+     * disabled (the default).
+     */
+    private CheckpointStore checkpointStore;
+
+    /**
+     * Caches the text of pages fetched with {@link MQuery#getPageText(Wiki, java.util.Collection)}. Null if disabled
+     * (the default).
+     */
+    private PageTextCache pageTextCache;
+
+    /**
+     * Caches title normalizations and redirects learned from query responses. Null if disabled (the default).
+     */
+    private TitleCache titleCache;
+
     /**
      * User name (without namespace prefix), only set if user is logged in.
      */
@@ -73,6 +141,11 @@ public final class Conf {
         this.scptPath = "w/api.php";
         this.isBot = false;
         this.maxResultLimit = 500;
+        this.groupQueryMax = 50;
+        this.apiHighLimits = false;
+        this.queryParallelism = 1;
+        this.prefetchContinuations = false;
+        this.retryPolicy = RetryPolicy.DEFAULT;
         this.uname = null;
         this.token = "+\\";
     }
@@ -100,4 +173,91 @@ public final class Conf {
     public void setUserAgent(String userAgent) {
         this.userAgent = userAgent;
     }
+
+    public void setPrefetchContinuations(boolean prefetchContinuations) {
+        this.prefetchContinuations = prefetchContinuations;
+    }
+
+    public void setApiHighLimits(boolean apiHighLimits) {
+        this.apiHighLimits = apiHighLimits;
+        this.maxResultLimit = apiHighLimits ? 5000 : 500;
+        this.groupQueryMax = apiHighLimits ? 500 : 50;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        this.checkpointStore = checkpointStore;
+    }
+
+    public void setPageTextCache(PageTextCache pageTextCache) {
+        this.pageTextCache = pageTextCache;
+    }
+
+    public void setTitleCache(TitleCache titleCache) {
+        this.titleCache = titleCache;
+    }
+
+    public synchronized void setQueryParallelism(int queryParallelism) {
+        this.queryParallelism = Math.max(1, queryParallelism);
+
+        if (queryExecutor != null && queryExecutor.getMaximumPoolSize() != this.queryParallelism) {
+            if (this.queryParallelism > queryExecutor.getMaximumPoolSize()) {
+                queryExecutor.setMaximumPoolSize(this.queryParallelism);
+                queryExecutor.setCorePoolSize(this.queryParallelism);
+            } else {
+                queryExecutor.setCorePoolSize(this.queryParallelism);
+                queryExecutor.setMaximumPoolSize(this.queryParallelism);
+            }
+        }
+    }
+
+    /**
+     * Gets the executor which runs concurrent queries, creating it if necessary. At most {@code queryParallelism} of
+     * its tasks run at the same time; the rest wait in line.
+     *
+     * @return The executor shared by all concurrent queries of the Wiki.
+     */
+    protected synchronized ExecutorService getQueryExecutor() {
+        if (queryExecutor == null) {
+            queryExecutor = newExecutor(queryParallelism, "jwiki-query-");
+        }
+
+        return queryExecutor;
+    }
+
+    /**
+     * Gets the executor which runs the time slices of partitioned enumerations, creating it if necessary. It is
+     * separate from the query executor, so that partitioned enumerations and multi-title queries do not wait for each
+     * other.
+     *
+     * @return The executor shared by all partitioned enumerations of the Wiki.
+     */
+    protected synchronized ExecutorService getPartitionExecutor() {
+        if (partitionExecutor == null) {
+            partitionExecutor = newExecutor(PARTITION_PARALLELISM, "jwiki-partition-");
+        }
+
+        return partitionExecutor;
+    }
+
+    /**
+     * Creates an executor with a fixed number of daemon threads, which are stopped while idle.
+     *
+     * @param threads The maximum number of tasks to run at the same time.
+     * @param name    The prefix of the names of the threads, to which the hostname is appended.
+     * @return The executor
+     */
+    private ThreadPoolExecutor newExecutor(int threads, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, name + hostname);
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.util.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers whether pages exist, mostly without asking the server. Existing titles are kept in a {@link BloomFilter}
+ * and missing titles in an exact set, both filled from snapshots of entire namespaces and from the results of earlier
+ * lookups. Only titles which cannot be answered locally are queried.
+ * <p>
+ * A title in the filter is reported to exist, which is wrong with the false positive probability of the filter. A title
+ * which is neither in the filter nor in the missing set is reported missing only if its namespace was loaded with
+ * {@link #load(NS)}. Titles which are not in normalized form, and titles in the main namespace which contain a colon,
+ * are always queried. Pages created or deleted after they were learned are only noticed if they are passed to
+ * {@link #invalidate(String)}, e.g. by registering it with a {@link RecentChangesPoller}.
+ *
+ * @author Fastily
+ */
+public final class ExistenceOracle {
+
+    /**
+     * The Wiki to check titles on.
+     */
+    private final Wiki wiki;
+
+    /**
+     * Titles known to exist.
+     */
+    private final BloomFilter existing;
+
+    /**
+     * Titles known to be missing.
+     */
+    private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Titles which changed since they were learned. These are queried until their new state is known.
+     */
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The namespaces whose existing titles were all added to {@code existing}.
+     */
+    private final Set<NS> loaded = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor, creates a new, empty ExistenceOracle.
+     *
+     * @param wiki           The Wiki to check titles on.
+     * @param expectedTitles The number of existing titles expected to be learned, e.g. the number of pages in the
+     *                       namespaces which will be loaded.
+     * @param fpp            The probability that a missing title is reported to exist.
+     */
+    public ExistenceOracle(Wiki wiki, long expectedTitles, double fpp) {
+        this.wiki = wiki;
+        this.existing = new BloomFilter(expectedTitles, fpp);
+    }
+
+    /**
+     * Learns every existing title in a namespace, so that titles in it which are not found locally are known to be
+     * missing. Uses a single enumeration of {@code list=allpages}.
+     *
+     * @param ns The namespace to load.
+     * @return This ExistenceOracle. Useful for chaining.
+     */
+    public ExistenceOracle load(NS ns) {
+        wiki.getWikiConfiguration().getLog().info(wiki, "Loading existing titles of namespace " + ns.getValue());
+
+        wiki.streamAllPages(null, false, false, -1, ns).forEach(existing::put);
+        loaded.add(ns);
+
+        return this;
+    }
+
+    /**
+     * Checks whether a title exists.
+     *
+     * @param title The title to check
+     * @return True if {@code title} exists.
+     */
+    public boolean exists(String title) {
+        return exists(List.of(title)).getOrDefault(title, false);
+    }
+
+    /**
+     * Checks whether titles exist. Titles which cannot be answered locally are queried in batches, and their results
+     * are learned.
+     *
+     * @param titles The titles to check
+     * @return Results keyed by title. {@code true} means the title exists.
+     */
+    public Map<String, Boolean> exists(Collection<String> titles) {
+        Map<String, Boolean> l = new HashMap<>();
+        List<String> uncertain = new ArrayList<>();
+
+        for (String s : titles) {
+            Boolean known = lookup(s);
+            if (known == null) {
+                uncertain.add(s);
+            } else {
+                l.put(s, known);
+            }
+        }
+
+        if (uncertain.isEmpty()) {
+            return l;
+        }
+
+        Map<String, Boolean> results = MQuery.exists(wiki, uncertain);
+        for (String s : uncertain) {
+            Boolean exists = results.get(s);
+            if (exists != null) {
+                l.put(s, exists);
+                learn(s, exists);
+            }
+        }
+
+        return l;
+    }
+
+    /**
+     * Forgets whether a page exists, e.g. because it was created, moved or deleted. The page is queried again the next
+     * time it is checked. Titles which the oracle could not have answered locally are ignored, so that feeding it every
+     * change on the wiki does not grow its state.
+     *
+     * @param title The title of the page
+     */
+    public void invalidate(String title) {
+        if (missing.remove(title) || lookup(title) != null) {
+            changed.add(title);
+        }
+    }
+
+    /**
+     * Gets the number of titles known to be missing.
+     *
+     * @return The size of the exact set of missing titles.
+     */
+    public int missingCount() {
+        return missing.size();
+    }
+
+    /**
+     * Answers whether a title exists, without querying the server.
+     *
+     * @param title The title to check
+     * @return True or false if the answer is known, or null if {@code title} must be queried.
+     */
+    private Boolean lookup(String title) {
+        if (changed.contains(title) || !isNormalized(title)) {
+            return null;
+        } else if (missing.contains(title)) {
+            return false;
+        } else if (existing.mightContain(title)) {
+            return true;
+        }
+
+        return loaded.contains(wiki.whichNS(title)) ? false : null;
+    }
+
+    /**
+     * Learns whether a title exists. Titles which are not normalized are not learned, since changes to them are
+     * published under their normalized title.
+     *
+     * @param title  The title which was queried
+     * @param exists True if {@code title} exists.
+     */
+    private void learn(String title, boolean exists) {
+        if (!isNormalized(title)) {
+            return;
+        }
+
+        if (exists) {
+            existing.put(title);
+        } else {
+            missing.add(title);
+        }
+
+        changed.remove(title);
+    }
+
+    /**
+     * Determines whether a title is in the form MediaWiki reports titles in: with the canonical namespace prefix, with
+     * spaces instead of underscores, and starting with an uppercase letter. Titles in the main namespace which contain
+     * a colon are not considered normalized, since they may use a namespace prefix which is spelled differently.
+     *
+     * @param title The title to check
+     * @return True if {@code title} is known to be normalized.
+     */
+    private boolean isNormalized(String title) {
+        NS ns = wiki.whichNS(title);
+        String name = wiki.nss(title);
+
+        if (NS.MAIN.equals(ns) ? title.contains(":") : !title.equals(wiki.convertIfNotInNS(name, ns))) {
+            return false;
+        }
+
+        return !name.isEmpty() && name.equals(name.strip()) && name.indexOf('_') < 0
+                && name.codePointAt(0) == Character.toUpperCase(name.codePointAt(0));
+    }
+}
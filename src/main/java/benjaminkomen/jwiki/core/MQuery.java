@@ -5,8 +5,18 @@ import benjaminkomen.jwiki.dwrap.ImageInfo;
 import benjaminkomen.jwiki.util.*;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Perform multi-title queries. Use of these methods is intended for
@@ -19,10 +29,14 @@ import java.util.*;
  * @see Wiki
  */
 public final class MQuery {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MQuery.class);
+
     /**
-     * The group {@code prop} query (multiple titles query) maximum
+     * The maximum size, in url-encoded bytes, of the titles sent in a single multi-title query. Long batches are sent
+     * as a {@code POST}, and this keeps their bodies reasonably small even for long non-ASCII titles.
      */
-    private static final int GROUP_QUERY_MAX = 50;
+    private static final int GROUP_QUERY_MAX_BYTES = 32 * 1024;
     private static final String ERROR_MESSAGE_NULL_INPUT = "null is not an acceptable title to query with";
     private static final String VAR_TITLES = "titles";
     private static final String VAR_TITLE = "title";
@@ -31,6 +45,81 @@ public final class MQuery {
         // no-args constructor
     }
 
+    /**
+     * Splits {@code titles} into groups of at most {@code batchSize} titles (see {@link QTemplate#batchSize(Wiki)}) and
+     * at most {@link #GROUP_QUERY_MAX_BYTES} long, and runs {@code batch} on each group. Groups are dispatched
+     * concurrently if the Wiki's {@code queryParallelism} is greater than 1, in which case all groups are run before the
+     * first failure is thrown.
+     *
+     * @param <R>       The type of result produced for each group
+     * @param wiki      The Wiki to use
+     * @param titles    The titles to split into groups.
+     * @param batchSize The maximum number of titles in each group.
+     * @param batch     The function which performs the query for a single group of titles.
+     * @return The result of each group, in the same order as the groups were created.
+     * @throws RuntimeException The first exception thrown by {@code batch}. Any further exceptions are suppressed by it.
+     */
+    private static <R> List<R> runBatches(Wiki wiki, Collection<String> titles, int batchSize, Function<List<String>, R> batch) {
+        if (FL.containsNull(titles)) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_NULL_INPUT);
+        }
+
+        List<List<String>> groups = new ArrayList<>();
+        GroupQueue<String> gq = new GroupQueue<>(titles, batchSize,
+                t -> URLEncoder.encode(t, StandardCharsets.UTF_8).length() + 3, GROUP_QUERY_MAX_BYTES);
+        while (gq.has()) {
+            groups.add(gq.poll());
+        }
+
+        if (wiki.getWikiConfiguration().getQueryParallelism() <= 1 || groups.size() <= 1) {
+            return FL.toArrayList(groups.stream().map(batch));
+        }
+
+        ExecutorService pool = wiki.getWikiConfiguration().getQueryExecutor();
+        List<Future<R>> futures = FL.toArrayList(groups.stream().map(group -> pool.submit(() -> batch.apply(group))));
+
+        List<R> results = new ArrayList<>();
+        RuntimeException failure = null;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    logBatchFailure(wiki, groups.get(i), e.getCause());
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new IllegalStateException(e.getCause());
+                    } else {
+                        failure.addSuppressed(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for query batches", e);
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+
+        return results;
+    }
+
+    /**
+     * Logs a group of titles which could not be queried.
+     *
+     * @param wiki  The Wiki which was being queried
+     * @param group The titles in the failed group
+     * @param e     The cause of the failure
+     */
+    private static void logBatchFailure(Wiki wiki, List<String> group, Throwable e) {
+        wiki.getWikiConfiguration().getLog().error(wiki, String.format("Could not query a group of %d titles starting with '%s'", group.size(), group.get(0)));
+        LOG.error("Error during query of title group", e);
+    }
+
     /**
      * Generic page property ({@code prop}) fetching. This implementation fetches *all* available properties. Use this
      * for prop queries that only return one String of interest per nested JsonObject.
@@ -46,32 +135,32 @@ public final class MQuery {
                                                             Map<String, String> pl, String elemArrKey) {
         MultiMap<String, JsonObject> l = new MultiMap<>();
 
-        if (FL.containsNull(titles)) {
-            throw new IllegalArgumentException(ERROR_MESSAGE_NULL_INPUT);
-        }
-
-        GroupQueue<String> gq = new GroupQueue<>(titles, GROUP_QUERY_MAX);
+        runBatches(wiki, titles, qut.batchSize(wiki), group -> {
+            MultiMap<String, JsonObject> ml = new MultiMap<>();
 
-        while (gq.has()) {
-            WQuery wq = new WQuery(wiki, qut).set(VAR_TITLES, gq.poll());
+            WQuery wq = new WQuery(wiki, qut).set(VAR_TITLES, group);
             if (pl != null) {
                 pl.forEach(wq::set);
             }
 
             while (wq.has()) {
                 wq.next().propComp(VAR_TITLE, elemArrKey).forEach((k, v) -> {
-                    l.touch(k);
+                    ml.touch(k);
                     if (v != null) {
-                        l.put(k, GSONP.getJsonArrayofJsonObject(v.getAsJsonArray()));
+                        ml.put(k, GSONP.getJsonArrayofJsonObject(v.getAsJsonArray()));
                     }
                 });
             }
-        }
+            return ml;
+        }).forEach(ml -> ml.getBackingMap().forEach(l::put));
+
         return l;
     }
 
     /**
-     * Performs a non-continuing {@code prop} query. Grabs a title and an element from each returned page.
+     * Performs a {@code prop} query which returns a single element per page. Grabs a title and an element from each
+     * returned page. If the elements of a group do not fit in one Response, then the server returns the remaining ones
+     * in continuation queries, which are followed.
      *
      * @param wiki   The Wiki to query.
      * @param titles The titles to use
@@ -80,23 +169,29 @@ public final class MQuery {
      * @param eKey   The value key to get from each page element. If this cannot be found, then it is set to null.
      * @return The {@code title} of each page as the key, and the value of the associated {@code eKey}.
      */
-    private static Map<String, JsonElement> getNoContProp(Wiki wiki, Collection<String> titles, QTemplate qut,
+    private static Map<String, JsonElement> getSingleProp(Wiki wiki, Collection<String> titles, QTemplate qut,
                                                           Map<String, String> pl, String eKey) {
         Map<String, JsonElement> m = new HashMap<>();
 
-        if (FL.containsNull(titles)) {
-            throw new IllegalArgumentException(ERROR_MESSAGE_NULL_INPUT);
-        }
+        runBatches(wiki, titles, qut.batchSize(wiki), group -> {
+            Map<String, JsonElement> ml = new HashMap<>();
 
-        GroupQueue<String> gq = new GroupQueue<>(titles, GROUP_QUERY_MAX);
-        while (gq.has()) {
-            WQuery wq = new WQuery(wiki, qut).set(VAR_TITLES, gq.poll());
+            WQuery wq = new WQuery(wiki, qut).set(VAR_TITLES, group);
             if (pl != null) {
                 pl.forEach(wq::set);
             }
 
-            m.putAll(wq.next().propComp(VAR_TITLE, eKey));
-        }
+            // pages which did not fit are listed without their element, which follows in a continuation
+            while (wq.has()) {
+                wq.next().propComp(VAR_TITLE, eKey).forEach((k, v) -> {
+                    if (v != null || !ml.containsKey(k)) {
+                        ml.put(k, v);
+                    }
+                });
+            }
+            return ml;
+        }).forEach(m::putAll);
+
         return m;
     }
 
@@ -115,19 +210,14 @@ public final class MQuery {
                                                   String tQKey, String aKey) {
         List<JsonObject> l = new ArrayList<>();
 
-        if (FL.containsNull(titles)) {
-            throw new IllegalArgumentException(ERROR_MESSAGE_NULL_INPUT);
-        }
-
-        GroupQueue<String> gq = new GroupQueue<>(titles, GROUP_QUERY_MAX);
-        while (gq.has()) {
-            WQuery wq = new WQuery(wiki, qut).set(tQKey, gq.poll());
+        runBatches(wiki, titles, qut.batchSize(wiki), group -> {
+            WQuery wq = new WQuery(wiki, qut).set(tQKey, group);
             if (pl != null) {
                 pl.forEach(wq::set);
             }
 
-            l.addAll(wq.next().listComp(aKey));
-        }
+            return wq.next().listComp(aKey);
+        }).forEach(l::addAll);
 
         return l;
     }
@@ -136,12 +226,13 @@ public final class MQuery {
      * Retrieve one String value from each JsonObject ArrayList for each pair in a MapList.
      *
      * @param m       The MapList to work with
-     * @param elemKey The key pointing to String to get in each JsonObject.
+     * @param elemKey The key pointing to String to get in each JsonObject. Values stored under {@code *} in
+     *                {@code formatversion=1} are found as well.
      * @return Each title, and the values that were found for it.
      */
     private static Map<String, List<String>> parsePropToSingle(MultiMap<String, JsonObject> m, String elemKey) {
         Map<String, List<String>> xl = new HashMap<>();
-        m.getBackingMap().forEach((k, v) -> xl.put(k, FL.toArrayList(v.stream().map(e -> GSONP.getString(e, elemKey)))));
+        m.getBackingMap().forEach((k, v) -> xl.put(k, FL.toArrayList(v.stream().map(e -> GSONP.getContent(e, elemKey)))));
 
         return xl;
     }
@@ -174,6 +265,126 @@ public final class MQuery {
         return xl;
     }
 
+    /**
+     * Fetches several {@code prop} modules for a set of titles in a single pass. The modules are fused into one query per
+     * group of titles, so that e.g. the text, categories and templates of a page are fetched together instead of with
+     * one round of queries each. Each module is continued independently until all of them are exhausted, and the
+     * properties returned for a page over all continuations are merged into a single record.
+     * <p>
+     * Example: {@code MQuery.getProps(wiki, titles, PageProp.TEXT, PageProp.CATEGORIES, PageProp.TEMPLATES)}
+     *
+     * @param wiki   The Wiki object to use
+     * @param titles The titles to query
+     * @param props  The properties to fetch.
+     * @return A Map where each key is a title and each value is its page record. The value of each property is stored
+     * under its {@link PageProp#getKey() key}, and pages which do not exist are marked with {@code missing}.
+     */
+    public static Map<String, JsonObject> getProps(Wiki wiki, Collection<String> titles, PageProp... props) {
+        Map<String, JsonObject> m = new HashMap<>();
+
+        QTemplate[] qut = Arrays.stream(props).map(p -> p.template).toArray(QTemplate[]::new);
+
+        runBatches(wiki, titles, batchSize(wiki, props), group -> {
+            Map<String, JsonObject> pages = new HashMap<>();
+
+            WQuery wq = new WQuery(wiki, qut).set(VAR_TITLES, group);
+            while (wq.has()) {
+                wq.next().pageComp().forEach((k, v) -> WQuery.mergePage(pages.computeIfAbsent(k, title -> new JsonObject()), v));
+            }
+            return pages;
+        }).forEach(m::putAll);
+
+        return m;
+    }
+
+    /**
+     * Streams the members of a category together with the selected properties of each member. The members and their
+     * properties are fetched in the same continuation sequence, using {@code categorymembers} as a generator, so no
+     * separate query for the properties is needed and only one batch of members is held in memory at a time.
+     *
+     * @param wiki  The Wiki object to use
+     * @param title The category to list. The {@code Category:} prefix is optional.
+     * @param props The properties to fetch for each member.
+     * @return A lazily evaluated Stream of page records, as described in
+     * {@link #getProps(Wiki, Collection, PageProp...)}.
+     */
+    public static Stream<JsonObject> streamCategoryMembers(Wiki wiki, String title, PageProp... props) {
+        return generate(wiki, WQuery.CATEGORYMEMBERS, FL.produceMap("cmtitle", wiki.convertIfNotInNS(title, NS.CATEGORY)), props);
+    }
+
+    /**
+     * Streams the pages in a namespace together with the selected properties of each page, using {@code allpages} as a
+     * generator.
+     *
+     * @param wiki  The Wiki object to use
+     * @param ns    The namespace to list.
+     * @param props The properties to fetch for each page.
+     * @return A lazily evaluated Stream of page records, as described in
+     * {@link #getProps(Wiki, Collection, PageProp...)}.
+     */
+    public static Stream<JsonObject> streamAllPages(Wiki wiki, NS ns, PageProp... props) {
+        return generate(wiki, WQuery.ALLPAGES, FL.produceMap("apnamespace", "" + ns.getValue()), props);
+    }
+
+    /**
+     * Streams the pages which transclude a page together with the selected properties of each of them, using
+     * {@code embeddedin} as a generator.
+     *
+     * @param wiki  The Wiki object to use
+     * @param title The transcluded page, e.g. a template. Include the namespace prefix.
+     * @param props The properties to fetch for each transcluding page.
+     * @return A lazily evaluated Stream of page records, as described in
+     * {@link #getProps(Wiki, Collection, PageProp...)}.
+     */
+    public static Stream<JsonObject> streamEmbeddedIn(Wiki wiki, String title, PageProp... props) {
+        return generate(wiki, WQuery.EMBEDDEDIN, FL.produceMap("eititle", title), props);
+    }
+
+    /**
+     * Streams the results of a search together with the selected properties of each result, using {@code search} as a
+     * generator.
+     *
+     * @param wiki  The Wiki object to use
+     * @param query The search query.
+     * @param props The properties to fetch for each result.
+     * @return A lazily evaluated Stream of page records, as described in
+     * {@link #getProps(Wiki, Collection, PageProp...)}.
+     */
+    public static Stream<JsonObject> streamSearch(Wiki wiki, String query, PageProp... props) {
+        return generate(wiki, WQuery.SEARCH, FL.produceMap("srsearch", query), props);
+    }
+
+    /**
+     * Runs a {@code list} module as a generator for {@code prop} modules. The generator is limited to as many pages per
+     * query as the {@code prop} modules can handle in a single query.
+     *
+     * @param wiki  The Wiki object to use
+     * @param list  The QTemplate of the {@code list} module to use as a generator.
+     * @param pl    The parameters of the {@code list} module, without the {@code g} prefix.
+     * @param props The properties to fetch for each generated page.
+     * @return A lazily evaluated Stream of page records.
+     */
+    private static Stream<JsonObject> generate(Wiki wiki, QTemplate list, Map<String, String> pl, PageProp... props) {
+        QTemplate generator = list.asGenerator();
+
+        WQuery wq = new WQuery(wiki, Stream.concat(Stream.of(generator), Arrays.stream(props).map(p -> p.template)).toArray(QTemplate[]::new));
+        pl.forEach((k, v) -> wq.set("g" + k, v));
+        wq.set(generator.getLimString(), "" + batchSize(wiki, props));
+
+        return wq.streamPages();
+    }
+
+    /**
+     * Determines how many pages to query at once when fetching several properties together.
+     *
+     * @param wiki  The Wiki object to use
+     * @param props The properties which will be fetched.
+     * @return The batch size of the most restrictive property.
+     */
+    private static int batchSize(Wiki wiki, PageProp... props) {
+        return Arrays.stream(props).mapToInt(p -> p.template.batchSize(wiki)).min().orElse(wiki.getWikiConfiguration().getGroupQueryMax());
+    }
+
     /**
      * Gets the list of usergroups (rights) users belong to. Sample groups: sysop, user, autoconfirmed, editor.
      *
@@ -228,13 +439,15 @@ public final class MQuery {
      */
     public static Map<String, Integer> getCategorySize(Wiki wiki, Collection<String> titles) {
         Map<String, Integer> l = new HashMap<>();
-        getNoContProp(wiki, titles, WQuery.CATEGORYINFO, null, "categoryinfo")
+        getSingleProp(wiki, titles, WQuery.CATEGORYINFO, null, "categoryinfo")
                 .forEach((k, v) -> l.put(k, v == null ? 0 : v.getAsJsonObject().get("size").getAsInt()));
         return l;
     }
 
     /**
-     * Gets the text of a page.
+     * Gets the text of a page. If the Wiki has a {@link PageTextCache}, then the latest revision ids of the cached
+     * titles are checked first, and only pages which are not cached or which changed since they were cached are
+     * downloaded.
      *
      * @param wiki   The wiki to use
      * @param titles The titles to query
@@ -242,12 +455,38 @@ public final class MQuery {
      */
     public static Map<String, String> getPageText(Wiki wiki, Collection<String> titles) {
         Map<String, String> l = new HashMap<>();
-        getNoContProp(wiki, titles, WQuery.PAGETEXT, null, "revisions").forEach((k, v) -> {
-            if (v == null) {
+        PageTextCache cache = wiki.getWikiConfiguration().getPageTextCache();
+
+        Collection<String> fetch = titles;
+        if (cache != null) {
+            fetch = new ArrayList<>();
+
+            List<String> cached = FL.toArrayList(titles.stream().filter(cache::contains));
+            Map<String, JsonElement> lastRevIds = cached.isEmpty() ? Map.of() : getSingleProp(wiki, cached, WQuery.PAGEINFO, null, "lastrevid");
+            for (String title : titles) {
+                JsonElement lastRevId = lastRevIds.get(title);
+                String text = lastRevId == null ? null : cache.get(title, lastRevId.getAsLong());
+                if (text != null) {
+                    l.put(title, text);
+                } else {
+                    cache.invalidate(title);
+                    fetch.add(title);
+                }
+            }
+        }
+
+        Set<String> requested = new HashSet<>(fetch);
+        getSingleProp(wiki, fetch, WQuery.PAGETEXT, null, "revisions").forEach((k, v) -> {
+            List<JsonObject> jl = v == null ? null : GSONP.getJsonArrayofJsonObject(v.getAsJsonArray());
+            if (jl == null || jl.isEmpty()) {
                 l.put(k, "");
-            } else {
-                List<JsonObject> jl = GSONP.getJsonArrayofJsonObject(v.getAsJsonArray());
-                l.put(k, jl == null || jl.isEmpty() ? "" : GSONP.getString(jl.get(0), "*"));
+                return;
+            }
+
+            String text = GSONP.getContent(jl.get(0), "content");
+            l.put(k, text);
+            if (cache != null && text != null && jl.get(0).has("revid") && requested.contains(k)) {
+                cache.put(k, jl.get(0).get("revid").getAsLong(), text);
             }
         });
 
@@ -320,12 +559,12 @@ public final class MQuery {
      * @return A Map of results keyed by title.
      */
     public static Map<String, List<String>> getExternalLinks(Wiki wiki, Collection<String> titles) {
-        return parsePropToSingle(getContProp(wiki, titles, WQuery.EXTLINKS, null, "extlinks"), "*");
+        return parsePropToSingle(getContProp(wiki, titles, WQuery.EXTLINKS, null, "extlinks"), "url");
     }
 
     /**
      * Checks if list of titles exists.
-     * FIXME getNoContProp - doubled output on non-normal titles
+     * FIXME getSingleProp - doubled output on non-normal titles
      *
      * @param wiki   The wiki object to use
      * @param titles The titles to query.
@@ -333,7 +572,7 @@ public final class MQuery {
      */
     public static Map<String, Boolean> exists(Wiki wiki, Collection<String> titles) {
         Map<String, Boolean> l = new HashMap<>();
-        getNoContProp(wiki, titles, WQuery.EXISTS, null, "missing").forEach((k, v) -> l.put(k, v == null));
+        getSingleProp(wiki, titles, WQuery.EXISTS, null, "missing").forEach((k, v) -> l.put(k, !GSONP.isTrue(v)));
         return l;
     }
 
@@ -390,20 +629,48 @@ public final class MQuery {
     }
 
     /**
-     * Resolves title redirects on a Wiki.
+     * Resolves title redirects on a Wiki. If the Wiki has a {@link TitleCache}, then only titles which it cannot resolve
+     * are queried.
      *
      * @param wiki   The Wiki to run the query against
      * @param titles The titles to attempt resolving.
      * @return A HashMap where each key is the original title, and the value is the resolved title.
      */
     public static Map<String, String> resolveRedirects(Wiki wiki, Collection<String> titles) {
+        TitleCache cache = wiki.getWikiConfiguration().getTitleCache();
+
         Map<String, String> l = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
         for (String s : titles) {
-            l.put(s, s);
+            String target = cache != null ? cache.resolve(s) : null;
+            if (target == null) {
+                unknown.add(s);
+                target = s;
+            }
+
+            l.put(s, target);
         }
 
-        getNoContList(wiki, titles, WQuery.RESOLVEREDIRECT, null, VAR_TITLES, "redirects")
-                .forEach(jo -> l.put(GSONP.getString(jo, "from"), GSONP.getString(jo, "to")));
+        // titles of the pages which came back, i.e. those which the server has resolved
+        Set<String> resolved = new HashSet<>();
+        runBatches(wiki, unknown, WQuery.RESOLVEREDIRECT.batchSize(wiki),
+                group -> new WQuery(wiki, WQuery.RESOLVEREDIRECT).set(VAR_TITLES, group).next()).forEach(r -> {
+            r.listComp("redirects").forEach(jo -> l.put(GSONP.getString(jo, "from"), GSONP.getString(jo, "to")));
+            GSONP.getJsonObjects(r.metaComp("pages")).forEach(jo -> resolved.add(GSONP.getString(jo, VAR_TITLE)));
+        });
+
+        if (cache != null) {
+            for (String s : unknown) {
+                if (resolved.contains(cache.normalize(s))) {
+                    cache.putNonRedirect(s);
+                }
+
+                String target = cache.resolve(s);
+                if (target != null) {
+                    l.put(s, target);
+                }
+            }
+        }
 
         return l;
     }
@@ -438,14 +705,14 @@ public final class MQuery {
      * @return A list of results keyed by title.
      */
     public static Map<String, List<String>> getSharedDuplicatesOf(Wiki wiki, Collection<String> titles) {
-        Map<String, List<Tuple<String, String>>> xl = parsePropToDouble(
-                getContProp(wiki, titles, WQuery.DUPLICATEFILES, null, "duplicatefiles"), "name", "shared");
+        MultiMap<String, JsonObject> xl = getContProp(wiki, titles, WQuery.DUPLICATEFILES, null, "duplicatefiles");
 
+        // formatversion=2 sends "shared": false for local duplicates, so the flag's value matters, not its presence
         Map<String, List<String>> l = new HashMap<>();
-        xl.forEach((k, v) -> l.put(k,
+        xl.getBackingMap().forEach((k, v) -> l.put(k,
                 FL.toArrayList(v.stream()
-                        .filter(t -> t.getValue2() != null)
-                        .map(t -> wiki.convertIfNotInNS(t.getValue1().replace('_', ' '), NS.FILE))
+                        .filter(jo -> GSONP.getBoolean(jo, "shared"))
+                        .map(jo -> wiki.convertIfNotInNS(GSONP.getString(jo, "name").replace('_', ' '), NS.FILE))
                 )
         ));
         return l;
@@ -460,8 +727,77 @@ public final class MQuery {
      */
     public static Map<String, String> getTextExtracts(Wiki wiki, Collection<String> titles) {
         Map<String, String> l = new HashMap<>();
-        getNoContProp(wiki, titles, WQuery.TEXTEXTRACTS, null, "extract").forEach((k, v) -> l.put(k, v == null ? null : v.getAsString()));
+        getSingleProp(wiki, titles, WQuery.TEXTEXTRACTS, null, "extract").forEach((k, v) -> l.put(k, v == null ? null : v.getAsString()));
 
         return l;
     }
-}
\ No newline at end of file
+
+    /**
+     * Page properties which can be fetched together with {@link MQuery#getProps(Wiki, Collection, PageProp...)}.
+     *
+     * @author Fastily
+     */
+    public enum PageProp {
+        /**
+         * The text of the latest revision of a page, stored in a {@code revisions} JsonArray.
+         */
+        TEXT(WQuery.PAGETEXT, "revisions"),
+
+        /**
+         * The categories a page is in.
+         */
+        CATEGORIES(WQuery.PAGECATEGORIES, "categories"),
+
+        /**
+         * The templates transcluded on a page.
+         */
+        TEMPLATES(WQuery.TEMPLATES, "templates"),
+
+        /**
+         * The wiki-links on a page.
+         */
+        LINKS(WQuery.LINKSONPAGE, "links"),
+
+        /**
+         * The images and other files used on a page.
+         */
+        IMAGES(WQuery.IMAGES, "images"),
+
+        /**
+         * The external (non-interwiki) links on a page.
+         */
+        EXTERNAL_LINKS(WQuery.EXTLINKS, "extlinks"),
+
+        /**
+         * The number of members of a category.
+         */
+        CATEGORY_INFO(WQuery.CATEGORYINFO, "categoryinfo"),
+
+        /**
+         * The plain-text extract of a page, if the TextExtracts extension is installed.
+         */
+        TEXT_EXTRACT(WQuery.TEXTEXTRACTS, "extract");
+
+        /**
+         * The QTemplate which fetches this property.
+         */
+        private final QTemplate template;
+
+        /**
+         * The key of this property in each page record.
+         */
+        @Getter
+        private final String key;
+
+        /**
+         * Constructor, creates a new PageProp.
+         *
+         * @param template The QTemplate which fetches this property.
+         * @param key      The key of this property in each page record.
+         */
+        PageProp(QTemplate template, String key) {
+            this.template = template;
+            this.key = key;
+        }
+    }
+}
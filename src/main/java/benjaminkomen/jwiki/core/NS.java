@@ -157,13 +157,14 @@ public final class NS {
         private final Pattern pattern;
 
         /**
-         * Constructor, takes a Reply with Namespace data.
+         * Constructor, takes a Reply with Namespace data. Both {@code formatversion=1} and {@code formatversion=2} replies
+         * are accepted.
          *
-         * @param reply A Reply object with a <code>namespaces</code> JSONObject.
+         * @param reply A Reply object with a <code>namespaces</code> JSONObject or JSONArray.
          */
         protected NSManager(JsonObject reply) {
-            for (JsonObject x : GSONP.convertJsonObjectToList(reply.getAsJsonObject("namespaces"))) {
-                String name = x.get("*").getAsString();
+            for (JsonObject x : GSONP.getJsonObjects(reply.get("namespaces"))) {
+                String name = GSONP.getContent(x, "name");
                 if (name.isEmpty()) {
                     name = "Main";
                 }
@@ -175,8 +176,8 @@ public final class NS {
                 validNamespaces.add(name);
             }
 
-            for (JsonObject x : GSONP.getJsonArrayofJsonObject(reply.getAsJsonArray("namespacealiases"))) {
-                String name = x.get("*").getAsString();
+            for (JsonObject x : GSONP.getJsonObjects(reply.get("namespacealiases"))) {
+                String name = GSONP.getContent(x, "alias");
                 validNamespacesAndNumbers.put(name, x.get("id").getAsInt());
                 validNamespaces.add(name);
             }
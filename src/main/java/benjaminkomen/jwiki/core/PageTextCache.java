@@ -0,0 +1,184 @@
+package benjaminkomen.jwiki.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of page text, keyed by title and revision id. The least recently used pages are evicted once the
+ * estimated size of the cached text exceeds a fixed number of bytes. Entries are only used after checking that the
+ * cached revision is still the latest revision of the page, so cached text is never stale.
+ *
+ * @author Fastily
+ * @see Wiki.Builder#withPageTextCache(long)
+ */
+public final class PageTextCache {
+
+    /**
+     * The estimated overhead, in bytes, of a single cache entry.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    /**
+     * The cached pages, in order of least to most recently used.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum estimated size, in bytes, of all cached entries.
+     */
+    private final long maxBytes;
+
+    /**
+     * The estimated size, in bytes, of all cached entries.
+     */
+    private long size;
+
+    /**
+     * Constructor, creates a new PageTextCache.
+     *
+     * @param maxBytes The maximum estimated size, in bytes, of the cached text.
+     */
+    public PageTextCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Determines whether a page is cached.
+     *
+     * @param title The title of the page
+     * @return True if there is a cache entry for {@code title}.
+     */
+    protected synchronized boolean contains(String title) {
+        return entries.containsKey(title);
+    }
+
+    /**
+     * Gets the text of a page, if the cached revision is the latest one. A cache entry for an older revision is
+     * removed.
+     *
+     * @param title     The title of the page
+     * @param lastRevId The id of the latest revision of the page.
+     * @return The text of revision {@code lastRevId} of {@code title}, or null if it is not cached.
+     */
+    protected synchronized String get(String title, long lastRevId) {
+        Entry e = entries.get(title);
+        if (e == null) {
+            return null;
+        } else if (e.revId != lastRevId) {
+            remove(title);
+            return null;
+        }
+
+        return e.text;
+    }
+
+    /**
+     * Caches the text of a revision of a page, evicting the least recently used pages if the cache is full. Text which
+     * is larger than the entire cache is not cached.
+     *
+     * @param title The title of the page
+     * @param revId The id of the revision
+     * @param text  The text of the revision
+     */
+    protected synchronized void put(String title, long revId, String text) {
+        remove(title);
+
+        Entry e = new Entry(revId, text, sizeOf(title, text));
+        if (e.size > maxBytes) {
+            return;
+        }
+
+        entries.put(title, e);
+        size += e.size;
+
+        for (Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator(); size > maxBytes && i.hasNext(); ) {
+            size -= i.next().getValue().size;
+            i.remove();
+        }
+    }
+
+    /**
+     * Removes a page from the cache, e.g. because it was edited.
+     *
+     * @param title The title of the page
+     */
+    public synchronized void invalidate(String title) {
+        remove(title);
+    }
+
+    /**
+     * Removes all pages from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Gets the estimated size of the cached text.
+     *
+     * @return The estimated size, in bytes, of all cached entries.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Removes a page from the cache. Callers must hold the lock of this PageTextCache.
+     *
+     * @param title The title of the page
+     */
+    private void remove(String title) {
+        Entry e = entries.remove(title);
+        if (e != null) {
+            size -= e.size;
+        }
+    }
+
+    /**
+     * Estimates the memory used by a cache entry. Java Strings use up to two bytes per character.
+     *
+     * @param title The title of the page
+     * @param text  The text of the page
+     * @return The estimated size of the entry, in bytes.
+     */
+    private static long sizeOf(String title, String text) {
+        return 2L * (title.length() + text.length()) + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * The cached text of a single revision.
+     *
+     * @author Fastily
+     */
+    private static class Entry {
+        /**
+         * The id of the revision
+         */
+        private final long revId;
+
+        /**
+         * The text of the revision
+         */
+        private final String text;
+
+        /**
+         * The estimated size of this Entry, in bytes.
+         */
+        private final long size;
+
+        /**
+         * Constructor, creates a new Entry.
+         *
+         * @param revId The id of the revision
+         * @param text  The text of the revision
+         * @param size  The estimated size of this Entry, in bytes.
+         */
+        private Entry(long revId, String text, long size) {
+            this.revId = revId;
+            this.text = text;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package benjaminkomen.jwiki.core;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side rate limiting for requests to the MediaWiki API. Requests are paced with a token bucket per host and API
+ * action, and {@code maxlag} is sent with every request if it is configured. Responses which indicate that the server
+ * is lagged or that the client is being throttled ({@code maxlag}/{@code ratelimited} errors, HTTP 429/503 with
+ * {@code Retry-After}) pause all requests to that host. If the throttled action has a rate limit, its rate is also
+ * halved and then recovers gradually as requests succeed again. Throttled responses are passed on unchanged; retrying
+ * them is left to the Wiki's {@link RetryPolicy}, so that its attempt and time budgets cover every retry.
+ * <p>
+ * Waiting for a token or for a pause to end sleeps on the thread executing the request. For asynchronous calls that is
+ * one of OkHttp's dispatcher threads, which counts against {@code maxRequestsPerHost} for as long as it waits.
+ *
+ * @author Fastily
+ */
+class RateLimiter implements Interceptor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RateLimiter.class);
+
+    /**
+     * The pause applied if the server throttled a request but did not say for how long.
+     */
+    private static final Duration DEFAULT_PAUSE = Duration.ofSeconds(5);
+
+    /**
+     * The configured rate limits, in requests per second, keyed by API action.
+     */
+    private final Map<String, Double> rateLimits;
+
+    /**
+     * The rate limit, in requests per second, for actions not in {@code rateLimits}. Values &le; 0 mean unlimited.
+     */
+    private final double defaultRateLimit;
+
+    /**
+     * The {@code maxlag} value, in seconds, to send with each request. Negative values disable {@code maxlag}.
+     */
+    private final int maxlag;
+
+    /**
+     * The throttling state of each host.
+     */
+    private final ConcurrentHashMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, creates a new RateLimiter
+     *
+     * @param rateLimits       The rate limits, in requests per second, keyed by API action.
+     * @param defaultRateLimit The rate limit for actions not in {@code rateLimits}. Set &le; 0 for unlimited.
+     * @param maxlag           The {@code maxlag} value to send with each request. Set negative to disable.
+     */
+    protected RateLimiter(Map<String, Double> rateLimits, double defaultRateLimit, int maxlag) {
+        this.rateLimits = Map.copyOf(rateLimits);
+        this.defaultRateLimit = defaultRateLimit;
+        this.maxlag = maxlag;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (maxlag >= 0) {
+            request = request.newBuilder().url(request.url().newBuilder().setQueryParameter("maxlag", "" + maxlag).build()).build();
+        }
+
+        HostState host = hosts.computeIfAbsent(request.url().host(), k -> new HostState());
+        TokenBucket bucket = host.bucketFor(actionOf(request.url()));
+
+        host.awaitPause();
+        bucket.acquire();
+
+        Response response = chain.proceed(request);
+        if (!RetryPolicy.isThrottled(response)) {
+            bucket.recover();
+            return response;
+        }
+
+        Duration pause = Objects.requireNonNullElse(RetryPolicy.retryAfter(response), DEFAULT_PAUSE);
+        host.pause(pause);
+        bucket.slowDown();
+
+        String error = response.header("MediaWiki-API-Error");
+        LOG.warn("Throttled by {} ({}), pausing for {} seconds", request.url().host(), error != null ? error : response.code(), pause.toSeconds());
+        return response;
+    }
+
+    /**
+     * Determines the API action of a request. This is used to select the rate limit to apply.
+     *
+     * @param url The url of the request
+     * @return The value of the {@code action} parameter, or the empty String if there is none.
+     */
+    private static String actionOf(HttpUrl url) {
+        String action = url.queryParameter("action");
+        return action == null ? "" : action;
+    }
+
+    /**
+     * Sleeps for the specified number of nanoseconds.
+     *
+     * @param nanos The number of nanoseconds to sleep for. Does nothing if this is &le; 0.
+     * @throws InterruptedIOException If the current thread was interrupted while sleeping.
+     */
+    private static void sleep(long nanos) throws InterruptedIOException {
+        if (nanos <= 0) {
+            return;
+        }
+
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for rate limit");
+        }
+    }
+
+    /**
+     * The throttling state of a single host.
+     *
+     * @author Fastily
+     */
+    private final class HostState {
+        /**
+         * The token buckets of this host, keyed by API action.
+         */
+        private final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+        /**
+         * The {@link System#nanoTime()} until which requests to this host are paused.
+         */
+        private volatile long pausedUntil = System.nanoTime();
+
+        /**
+         * Gets the token bucket for an API action, creating it if necessary.
+         *
+         * @param action The API action
+         * @return The token bucket for {@code action}
+         */
+        private TokenBucket bucketFor(String action) {
+            return buckets.computeIfAbsent(action, k -> new TokenBucket(rateLimits.getOrDefault(k, defaultRateLimit)));
+        }
+
+        /**
+         * Pauses all requests to this host.
+         *
+         * @param pause The amount of time to pause for.
+         */
+        private synchronized void pause(Duration pause) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + pause.toNanos());
+        }
+
+        /**
+         * Blocks until requests to this host are no longer paused.
+         *
+         * @throws InterruptedIOException If the current thread was interrupted while waiting.
+         */
+        private void awaitPause() throws InterruptedIOException {
+            sleep(pausedUntil - System.nanoTime());
+        }
+    }
+
+    /**
+     * A token bucket which paces requests to a configured rate. The effective rate is halved when the server throttles
+     * a request, and recovers towards the configured rate as requests succeed.
+     *
+     * @author Fastily
+     */
+    private static final class TokenBucket {
+        /**
+         * The configured rate, in requests per second. Values &le; 0 mean unlimited.
+         */
+        private final double maxRate;
+
+        /**
+         * The current, effective rate in requests per second.
+         */
+        private double rate;
+
+        /**
+         * The number of available tokens. This is negative if requests are queued up waiting for tokens.
+         */
+        private double tokens;
+
+        /**
+         * The {@link System#nanoTime()} at which tokens were last added.
+         */
+        private long lastRefill = System.nanoTime();
+
+        /**
+         * Constructor, creates a new TokenBucket.
+         *
+         * @param maxRate The configured rate, in requests per second. Set &le; 0 for unlimited.
+         */
+        private TokenBucket(double maxRate) {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.tokens = Math.max(1, maxRate);
+        }
+
+        /**
+         * Takes a token from this bucket, blocking until one is available.
+         *
+         * @throws InterruptedIOException If the current thread was interrupted while waiting.
+         */
+        private void acquire() throws InterruptedIOException {
+            if (maxRate <= 0) {
+                return;
+            }
+
+            long wait;
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(Math.max(1, rate), tokens + (now - lastRefill) / 1e9 * rate);
+                lastRefill = now;
+
+                tokens -= 1;
+                wait = tokens >= 0 ? 0 : (long) (-tokens / rate * 1e9);
+            }
+
+            sleep(wait);
+        }
+
+        /**
+         * Halves the effective rate of this bucket, down to a minimum of one request every ten seconds.
+         */
+        private synchronized void slowDown() {
+            if (maxRate > 0) {
+                rate = Math.max(0.1, rate / 2);
+            }
+        }
+
+        /**
+         * Gradually raises the effective rate of this bucket back towards the configured rate.
+         */
+        private synchronized void recover() {
+            if (maxRate > 0 && rate < maxRate) {
+                rate = Math.min(maxRate, rate + maxRate / 20);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Polls the recent changes of a Wiki in the background and publishes the title of every page which was edited,
+ * created, moved, deleted or otherwise changed to its listeners. Register client-side caches as listeners so that they
+ * can use long expiry times and still drop changed pages within one polling interval.
+ * <p>
+ * Each poll starts {@link #OVERLAP} before the last change seen by the previous one and skips the changes which were
+ * already published. A change may become visible after changes with a later timestamp or a higher id, because the
+ * transactions which record them commit in a different order; the overlap makes sure that such a change is still
+ * published, as long as it becomes visible within {@link #OVERLAP} and is still in the recent changes of the Wiki.
+ *
+ * @author Fastily
+ */
+public final class RecentChangesPoller implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecentChangesPoller.class);
+
+    /**
+     * How far before the most recent change seen so far each poll starts.
+     */
+    public static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    /**
+     * The Wiki to poll.
+     */
+    private final Wiki wiki;
+
+    /**
+     * The amount of time between two polls.
+     */
+    private final Duration interval;
+
+    /**
+     * The listeners to publish changed titles to.
+     */
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The timestamp of the most recent change seen so far. The next poll starts {@link #OVERLAP} before this.
+     */
+    private Instant since;
+
+    /**
+     * The ids of the changes which were published, mapped to their timestamps. Only changes which the next poll may
+     * return again are kept.
+     */
+    private final Map<Long, Instant> published = new HashMap<>();
+
+    /**
+     * Runs the polls, or null if polling has not been started.
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor, creates a new RecentChangesPoller which publishes changes made from now on, and possibly some made up
+     * to {@link #OVERLAP} earlier. If {@code wiki} has a {@link PageTextCache} or {@link TitleCache}, then these are
+     * registered as listeners.
+     *
+     * @param wiki     The Wiki to poll.
+     * @param interval The amount of time between two polls.
+     */
+    public RecentChangesPoller(Wiki wiki, Duration interval) {
+        this.wiki = wiki;
+        this.interval = interval;
+        this.since = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        PageTextCache pageTextCache = wiki.getWikiConfiguration().getPageTextCache();
+        if (pageTextCache != null) {
+            addListener(pageTextCache::invalidate);
+        }
+
+        TitleCache titleCache = wiki.getWikiConfiguration().getTitleCache();
+        if (titleCache != null) {
+            addListener(titleCache::invalidate);
+        }
+    }
+
+    /**
+     * Registers a listener, which is called with the title of each changed page. Listeners are called on the polling
+     * thread, so they should return quickly.
+     *
+     * @param listener The listener to register
+     * @return This RecentChangesPoller. Useful for chaining.
+     */
+    public RecentChangesPoller addListener(Consumer<String> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Starts polling in the background. Does nothing if polling was already started.
+     *
+     * @return This RecentChangesPoller. Useful for chaining.
+     */
+    public synchronized RecentChangesPoller start() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "jwiki-recentchanges-" + wiki.getWikiConfiguration().getHostname());
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::pollQuietly, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        return this;
+    }
+
+    /**
+     * Stops polling. Polling can be resumed with {@link #start()}, which picks up where it stopped.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Fetches the changes made since the previous poll and publishes their titles. This is called periodically after
+     * {@link #start()}, but may also be called directly, e.g. just before reading from a cache.
+     *
+     * @throws IllegalStateException If the recent changes could not be fetched. Changes published before the failure
+     *                               are not published again.
+     */
+    public synchronized void poll() {
+        WQuery wq = new WQuery(wiki, WQuery.RECENTCHANGES).set("rcprop", "title|timestamp|ids|loginfo").set("rcdir", "newer")
+                .set("rcstart", since.minus(OVERLAP).toString());
+
+        wq.stream(r -> r.listComp("recentchanges")).forEach(this::publish);
+
+        Instant horizon = since.minus(OVERLAP);
+        published.values().removeIf(timestamp -> timestamp.isBefore(horizon));
+    }
+
+    /**
+     * Runs {@link #poll()}, logging rather than throwing errors so that a failed poll does not end the polling.
+     */
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            LOG.error("Error while polling recent changes", e);
+            wiki.getWikiConfiguration().getLog().error(wiki, "Could not poll recent changes, trying again in " + interval);
+        }
+    }
+
+    /**
+     * Publishes the titles affected by a change, unless it was already published by a previous poll. Moves publish both
+     * the old and the new title.
+     *
+     * @param change The change, from {@code list=recentchanges}.
+     */
+    private void publish(JsonObject change) {
+        // changes are returned oldest first, by the clock of the server
+        Instant timestamp = Instant.parse(GSONP.getString(change, "timestamp"));
+        since = timestamp;
+
+        if (published.putIfAbsent(change.get("rcid").getAsLong(), timestamp) != null) {
+            return;
+        }
+
+        publishTitle(GSONP.getString(change, "title"));
+        if (change.has("logparams") && change.get("logparams").isJsonObject()) {
+            publishTitle(GSONP.getString(change.getAsJsonObject("logparams"), "target_title"));
+        }
+    }
+
+    /**
+     * Calls each listener with a changed title.
+     *
+     * @param title The changed title. Ignored if null.
+     */
+    private void publishTitle(String title) {
+        if (title == null) {
+            return;
+        }
+
+        for (Consumer<String> listener : listeners) {
+            try {
+                listener.accept(title);
+            } catch (Exception e) {
+                LOG.error("Recent changes listener failed for {}", title, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package benjaminkomen.jwiki.core;
+
+import lombok.Builder;
+import lombok.Getter;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Decides whether, and after how long, a failed request to a Wiki is retried. Delays grow exponentially from
+ * {@code initialDelay} up to {@code maxDelay}, are randomized by {@code jitter} so that concurrent clients do not retry
+ * in lockstep, and retries stop after {@code maxAttempts} attempts or once {@code maxElapsed} has passed.
+ * <p>
+ * Idempotent {@code GET} requests are retried on network errors, transient HTTP errors and when the server throttles
+ * them, waiting at least as long as its {@code Retry-After} header asks. Actions {@code POST}ed to a Wiki may already
+ * have been applied when a network error occurs, so they are only retried if the request never reached the server
+ * (e.g. the connection could not be made) or if the server explicitly rejected it as rate limited or lagged.
+ * <p>
+ * The delay between attempts is slept on the thread executing the request, so an asynchronous call keeps its OkHttp
+ * dispatcher slot while it backs off.
+ *
+ * @author Fastily
+ */
+@Getter
+@Builder
+public final class RetryPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RetryPolicy.class);
+
+    /**
+     * The default RetryPolicy.
+     */
+    public static final RetryPolicy DEFAULT = RetryPolicy.builder().build();
+
+    /**
+     * A RetryPolicy which never retries.
+     */
+    public static final RetryPolicy NEVER = RetryPolicy.builder().maxAttempts(1).build();
+
+    /**
+     * The maximum number of attempts, including the first one.
+     */
+    @Builder.Default
+    private final int maxAttempts = 5;
+
+    /**
+     * The delay before the first retry.
+     */
+    @Builder.Default
+    private final Duration initialDelay = Duration.ofMillis(500);
+
+    /**
+     * The maximum delay between two attempts.
+     */
+    @Builder.Default
+    private final Duration maxDelay = Duration.ofSeconds(30);
+
+    /**
+     * The factor by which the delay grows after each retry.
+     */
+    @Builder.Default
+    private final double multiplier = 2;
+
+    /**
+     * The fraction, between 0 and 1, of each delay which is randomized. For example, with a jitter of 0.5 a delay of
+     * 10 seconds becomes a random delay between 5 and 10 seconds.
+     */
+    @Builder.Default
+    private final double jitter = 0.5;
+
+    /**
+     * The maximum amount of time to spend on an operation, including all of its retries. No retry is started if it
+     * would begin after this budget has been used up.
+     */
+    @Builder.Default
+    private final Duration maxElapsed = Duration.ofMinutes(2);
+
+    /**
+     * Calculates the delay before a retry.
+     *
+     * @param attempt The number of attempts made so far, starting at 1.
+     * @return The randomized delay before the next attempt.
+     */
+    public Duration backoff(int attempt) {
+        double delay = Math.min(maxDelay.toNanos(), initialDelay.toNanos() * Math.pow(multiplier, attempt - 1.0));
+        double j = Math.min(1, Math.max(0, jitter));
+
+        return Duration.ofNanos((long) (delay * (1 - j * ThreadLocalRandom.current().nextDouble())));
+    }
+
+    /**
+     * Runs an operation, retrying it according to this RetryPolicy if it throws a retryable IOException or if its
+     * result is retryable. Retries of a result wait for at least as long as it requests.
+     *
+     * @param operation      The operation to run.
+     * @param retryableError Tests whether an IOException thrown by {@code operation} should be retried.
+     * @param retryable      Tests whether a result of {@code operation} should be retried.
+     * @param requestedDelay The minimum delay before retrying a result, e.g. as requested by the server.
+     * @param discard        Releases a result which is about to be retried, e.g. by closing it.
+     * @param <T>            The result type of {@code operation}.
+     * @return The first result which was not retryable, or the last result if no retries remain.
+     * @throws IOException The last IOException thrown by {@code operation}, if it was not retryable or if no retries
+     *                     remain.
+     */
+    <T> T execute(Operation<T> operation, Predicate<IOException> retryableError, Predicate<T> retryable,
+                  Function<T, Duration> requestedDelay, Consumer<T> discard) throws IOException {
+        long deadline = System.nanoTime() + maxElapsed.toNanos();
+
+        for (int i = 1; ; i++) {
+            T result;
+            try {
+                result = operation.run();
+            } catch (IOException e) {
+                Duration delay = nextDelay(i, deadline, Duration.ZERO);
+                if (!retryableError.test(e) || delay == null) {
+                    throw e;
+                }
+
+                LOG.warn("Attempt {} failed with '{}', retrying in {} ms", i, e.getMessage(), delay.toMillis());
+                sleep(delay);
+                continue;
+            }
+
+            Duration delay;
+            if (!retryable.test(result) || (delay = nextDelay(i, deadline, requestedDelay.apply(result))) == null) {
+                return result;
+            }
+
+            discard.accept(result);
+            LOG.warn("Attempt {} returned a transient failure, retrying in {} ms", i, delay.toMillis());
+            sleep(delay);
+        }
+    }
+
+    /**
+     * Determines whether an IOException is likely to be transient. Interruptions are not retried. OkHttp reports a
+     * cancelled call as a plain IOException, so callers must check whether their call was cancelled themselves.
+     *
+     * @param e The IOException to check
+     * @return True if the operation which threw {@code e} should be retried.
+     */
+    boolean isRetryable(IOException e) {
+        return !(e instanceof InterruptedIOException) || e instanceof SocketTimeoutException;
+    }
+
+    /**
+     * Determines whether an IOException proves that the request never reached the server, so that even a
+     * non-idempotent request can safely be sent again. This is the case if the connection could not be established.
+     *
+     * @param e The IOException to check
+     * @return True if the request which failed with {@code e} was not sent.
+     */
+    boolean isUnsent(IOException e) {
+        return e instanceof ConnectException || e instanceof NoRouteToHostException || e instanceof UnknownHostException;
+    }
+
+    /**
+     * Determines whether a Response to an idempotent request indicates a transient server error, or that the server
+     * throttled the request.
+     *
+     * @param response The Response to check
+     * @return True if the request which produced {@code response} should be retried.
+     */
+    boolean isRetryable(Response response) {
+        if (isThrottled(response)) {
+            return true;
+        }
+
+        switch (response.code()) {
+            case 408:
+            case 500:
+            case 502:
+            case 503:
+            case 504:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Determines whether the result of an action {@code POST}ed to a Wiki indicates a transient failure.
+     *
+     * @param result The ActionResult to check
+     * @return True if the action which produced {@code result} should be retried.
+     */
+    boolean isRetryable(WAction.ActionResult result) {
+        return result == WAction.ActionResult.RATELIMITED;
+    }
+
+    /**
+     * Determines whether a Response indicates that the server is lagged or that the client is being throttled: a
+     * {@code maxlag} or {@code ratelimited} error, HTTP 429, or HTTP 503 with a {@code Retry-After} header.
+     *
+     * @param response The Response to check
+     * @return True if {@code response} is a throttling response.
+     */
+    static boolean isThrottled(Response response) {
+        String error = response.header("MediaWiki-API-Error");
+        return "maxlag".equals(error) || "ratelimited".equals(error) || response.code() == 429
+                || (response.code() == 503 && response.header("Retry-After") != null);
+    }
+
+    /**
+     * Determines how long the server asked the client to wait, based on the {@code Retry-After} header of a Response.
+     *
+     * @param response The Response to check
+     * @return The delay requested by the server, or null if it did not specify a valid one.
+     */
+    static Duration retryAfter(Response response) {
+        String header = response.header("Retry-After");
+        if (header == null) {
+            return null;
+        }
+
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(header.strip())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration d = Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(header.strip(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return d.isNegative() ? Duration.ZERO : d;
+            } catch (Exception ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Determines the delay before the next attempt.
+     *
+     * @param attempt  The number of attempts made so far, starting at 1.
+     * @param deadline The {@link System#nanoTime()} after which no retries are started.
+     * @param minimum  The minimum delay, e.g. as requested by the server.
+     * @return The delay before the next attempt, or null if there should be no more attempts.
+     */
+    private Duration nextDelay(int attempt, long deadline, Duration minimum) {
+        if (attempt >= maxAttempts) {
+            return null;
+        }
+
+        Duration backoff = backoff(attempt);
+        Duration delay = minimum.compareTo(backoff) > 0 ? minimum : backoff;
+        return System.nanoTime() + delay.toNanos() > deadline ? null : delay;
+    }
+
+    /**
+     * Sleeps before a retry.
+     *
+     * @param delay The amount of time to sleep for
+     * @throws InterruptedIOException If the current thread was interrupted while sleeping.
+     */
+    private static void sleep(Duration delay) throws InterruptedIOException {
+        try {
+            TimeUnit.NANOSECONDS.sleep(delay.toNanos());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    /**
+     * An operation which may be retried.
+     *
+     * @param <T> The result type of the operation.
+     * @author Fastily
+     */
+    @FunctionalInterface
+    interface Operation<T> {
+        /**
+         * Runs the operation.
+         *
+         * @return The result of the operation.
+         * @throws IOException Network error
+         */
+        T run() throws IOException;
+    }
+}
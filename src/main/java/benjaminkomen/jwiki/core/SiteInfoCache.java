@@ -0,0 +1,175 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.HttpUrl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * On-disk cache of the siteinfo a Wiki needs before it is usable, such as its namespaces. Entries are stored as one
+ * JSON file per API endpoint and are used as-is while they are younger than the configured time-to-live. Expired entries
+ * are revalidated by fetching the siteinfo again; if that fails, the expired entry is used instead.
+ *
+ * @author Fastily
+ */
+class SiteInfoCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SiteInfoCache.class);
+
+    /**
+     * The key under which the time an entry was fetched is stored, in milliseconds since the epoch.
+     */
+    private static final String VAR_FETCHED = "fetched";
+
+    /**
+     * The key under which the cached siteinfo is stored.
+     */
+    private static final String VAR_SITEINFO = "siteinfo";
+
+    /**
+     * The directory to store cache entries in.
+     */
+    private final Path directory;
+
+    /**
+     * The amount of time after which a cache entry must be revalidated.
+     */
+    private final Duration ttl;
+
+    /**
+     * Constructor, creates a new SiteInfoCache.
+     *
+     * @param directory The directory to store cache entries in. This is created if it does not exist.
+     * @param ttl       The amount of time after which a cache entry must be revalidated.
+     */
+    protected SiteInfoCache(Path directory, Duration ttl) {
+        this.directory = directory;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets the siteinfo of an API endpoint, from the cache if possible.
+     *
+     * @param endpoint The API endpoint to get the siteinfo of.
+     * @param fetch    Fetches the siteinfo from the server. Called if there is no cache entry or if it expired.
+     * @return The siteinfo of {@code endpoint}.
+     */
+    protected JsonObject get(HttpUrl endpoint, Supplier<JsonObject> fetch) {
+        Path file = directory.resolve(fileNameOf(endpoint));
+        JsonObject entry = read(file);
+
+        if (isFresh(entry)) {
+            return entry.getAsJsonObject(VAR_SITEINFO);
+        }
+
+        JsonObject siteinfo;
+        try {
+            siteinfo = fetch.get();
+        } catch (RuntimeException e) {
+            if (entry == null) {
+                throw e;
+            }
+
+            LOG.warn("Could not revalidate siteinfo of {}, using expired cache entry", endpoint, e);
+            return entry.getAsJsonObject(VAR_SITEINFO);
+        }
+
+        write(file, siteinfo);
+        return siteinfo;
+    }
+
+    /**
+     * Gets the siteinfo of an API endpoint if it is cached and has not expired.
+     *
+     * @param endpoint The API endpoint to get the siteinfo of.
+     * @return The cached siteinfo of {@code endpoint}, or null if there is none or it expired.
+     */
+    protected JsonObject getIfFresh(HttpUrl endpoint) {
+        JsonObject entry = read(directory.resolve(fileNameOf(endpoint)));
+        return isFresh(entry) ? entry.getAsJsonObject(VAR_SITEINFO) : null;
+    }
+
+    /**
+     * Stores the siteinfo of an API endpoint, e.g. after it was fetched together with other data.
+     *
+     * @param endpoint The API endpoint the siteinfo belongs to.
+     * @param siteinfo The siteinfo to store
+     */
+    protected void put(HttpUrl endpoint, JsonObject siteinfo) {
+        write(directory.resolve(fileNameOf(endpoint)), siteinfo);
+    }
+
+    /**
+     * Determines whether a cache entry exists and is younger than the time-to-live.
+     *
+     * @param entry The cache entry to check. Optional, may be null.
+     * @return True if {@code entry} can be used without revalidating it.
+     */
+    private boolean isFresh(JsonObject entry) {
+        return entry != null && Instant.ofEpochMilli(entry.get(VAR_FETCHED).getAsLong()).plus(ttl).isAfter(Instant.now());
+    }
+
+    /**
+     * Reads a cache entry.
+     *
+     * @param file The file of the cache entry
+     * @return The cache entry, or null if it does not exist or could not be read.
+     */
+    private static JsonObject read(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        try {
+            JsonObject entry = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            return entry.has(VAR_FETCHED) && entry.has(VAR_SITEINFO) ? entry : null;
+        } catch (Exception e) {
+            LOG.warn("Ignoring unreadable siteinfo cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a cache entry. The entry is written to a temporary file first and then moved into place, so concurrent
+     * readers never see a partially written entry.
+     *
+     * @param file     The file of the cache entry
+     * @param siteinfo The siteinfo to store
+     */
+    private void write(Path file, JsonObject siteinfo) {
+        JsonObject entry = new JsonObject();
+        entry.addProperty(VAR_FETCHED, Instant.now().toEpochMilli());
+        entry.add(VAR_SITEINFO, siteinfo);
+
+        try {
+            Files.createDirectories(directory);
+
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            Files.writeString(tmp, GSONP.getGson().toJson(entry), StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write siteinfo cache entry {}", file, e);
+        }
+    }
+
+    /**
+     * Derives the name of the cache file of an API endpoint.
+     *
+     * @param endpoint The API endpoint
+     * @return A file name which is unique to {@code endpoint}.
+     */
+    private static String fileNameOf(HttpUrl endpoint) {
+        return (endpoint.host() + "_" + endpoint.port() + endpoint.encodedPath()).replaceAll("[^A-Za-z0-9.-]", "_") + ".json";
+    }
+}
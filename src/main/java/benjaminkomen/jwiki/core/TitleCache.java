@@ -0,0 +1,134 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of how a Wiki resolves titles. Title normalizations and redirects are learned from every query
+ * response, so titles which were seen before can be resolved without asking the server again. Normalizations never
+ * change, but redirects do; changed pages should be removed with {@link #invalidate(String)}, e.g. by a
+ * {@link RecentChangesPoller}. Each map holds at most a fixed number of titles, evicting the least recently used
+ * ones.
+ *
+ * @author Fastily
+ * @see Wiki.Builder#withTitleCache(int)
+ */
+public final class TitleCache {
+
+    /**
+     * Maps non-normalized titles to their normalized form, in order of least to most recently used.
+     */
+    private final Map<String, String> normalized;
+
+    /**
+     * Maps normalized titles to the title they redirect to, in order of least to most recently used. Titles which are
+     * known not to be redirects map to themselves.
+     */
+    private final Map<String, String> redirects;
+
+    /**
+     * Constructor, creates a new TitleCache.
+     *
+     * @param maxEntries The maximum number of normalizations, and of redirects, to remember.
+     */
+    public TitleCache(int maxEntries) {
+        normalized = lruMap(maxEntries);
+        redirects = lruMap(maxEntries);
+    }
+
+    /**
+     * Creates an access ordered map which evicts its least recently used entry once it holds more than
+     * {@code maxEntries} entries.
+     *
+     * @param maxEntries The maximum number of entries
+     * @return The map
+     */
+    private static Map<String, String> lruMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Normalizes a title, if its normalized form is known.
+     *
+     * @param title The title to normalize
+     * @return The normalized form of {@code title}, or {@code title} itself if it is already normalized or unknown.
+     */
+    public synchronized String normalize(String title) {
+        return normalized.getOrDefault(title, title);
+    }
+
+    /**
+     * Resolves a title locally. The title is normalized first.
+     *
+     * @param title The title to resolve
+     * @return The title {@code title} redirects to, {@code title} in normalized form if it is known not to be a
+     * redirect, or null if it is unknown.
+     */
+    public synchronized String resolve(String title) {
+        return redirects.get(normalize(title));
+    }
+
+    /**
+     * Learns the normalizations and redirects in a query response.
+     *
+     * @param result The query response received from the server.
+     */
+    protected synchronized void learn(JsonObject result) {
+        if (!result.has("query") || !result.get("query").isJsonObject()) {
+            return;
+        }
+
+        JsonObject query = result.getAsJsonObject("query");
+        for (JsonObject jo : GSONP.getJsonObjects(query.get("normalized"))) {
+            normalized.put(GSONP.getString(jo, "from"), GSONP.getString(jo, "to"));
+        }
+
+        for (JsonObject jo : GSONP.getJsonObjects(query.get("redirects"))) {
+            redirects.put(GSONP.getString(jo, "from"), GSONP.getString(jo, "to"));
+        }
+    }
+
+    /**
+     * Records that a title is not a redirect, unless it was learned to be one in the meantime.
+     *
+     * @param title The title which was resolved by the server.
+     */
+    protected synchronized void putNonRedirect(String title) {
+        String n = normalize(title);
+        redirects.putIfAbsent(n, n);
+    }
+
+    /**
+     * Forgets what a page resolves to, e.g. because it was edited, moved or deleted.
+     *
+     * @param title The title of the page
+     */
+    public synchronized void invalidate(String title) {
+        redirects.remove(normalize(title));
+    }
+
+    /**
+     * Forgets everything which was learned.
+     */
+    public synchronized void clear() {
+        normalized.clear();
+        redirects.clear();
+    }
+
+    /**
+     * Gets the number of titles which can be resolved locally.
+     *
+     * @return The number of titles whose redirect target, or lack thereof, is known.
+     */
+    public synchronized int size() {
+        return redirects.size();
+    }
+}
@@ -4,7 +4,6 @@ import benjaminkomen.jwiki.util.FL;
 import benjaminkomen.jwiki.util.GSONP;
 import benjaminkomen.jwiki.util.Tuple;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import lombok.Getter;
 import okhttp3.Response;
 import okio.BufferedSource;
@@ -16,6 +15,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
@@ -36,7 +36,9 @@ class WAction {
     }
 
     /**
-     * {@code POST} an action
+     * {@code POST} an action. The action is retried according to {@code wiki}'s RetryPolicy if it was rejected as
+     * {@link ActionResult#RATELIMITED}, or if it failed with a network error before reaching the server. Other network
+     * errors are not retried, since the server may already have performed the action.
      *
      * @param wiki       The Wiki to work on.
      * @param action     The type of action to perform. This is the literal API action
@@ -45,15 +47,18 @@ class WAction {
      * @return True on success
      */
     protected static Tuple<ActionResult, JsonObject> postAction(Wiki wiki, String action, boolean applyToken, Map<String, String> form) {
-        Map<String, String> fl = FL.produceMap("format", "json");
+        Map<String, String> fl = FL.produceMap("format", "json", "formatversion", "2");
         if (applyToken) {
             fl.put("token", wiki.getWikiConfiguration().getToken());
         }
 
         fl.putAll(form);
 
+        RetryPolicy policy = wiki.getWikiConfiguration().getRetryPolicy();
         try {
-            JsonObject result = JsonParser.parseString(wiki.getApiclient().basicPOST(FL.produceMap("action", action), fl).body().string()).getAsJsonObject();
+            JsonObject result = policy.execute(() -> GSONP.parseResponseBody(wiki.getApiclient().basicPOST(FL.produceMap("action", action), fl).body(), null),
+                    policy::isUnsent, r -> policy.isRetryable(ActionResult.wrap(r, action)), r -> Duration.ZERO, r -> {
+                    });
             if (wiki.getWikiConfiguration().isDebug()) {
                 wiki.getWikiConfiguration().getLog().debug(wiki, GSONP.getGsonPrettyPrint().toJson(result));
             }
@@ -103,29 +108,16 @@ class WAction {
             parameterList.put("bot", "");
         }
 
-        for (int i = 0; i < 5; i++) {
-            switch (postAction(wiki, "edit", true, parameterList).getValue1()) {
-                case SUCCESS:
-                    return true;
-                case RATELIMITED:
-                    try {
-                        wiki.getWikiConfiguration().getLog().fyi(wiki, "Ratelimited by server, sleeping 10 seconds");
-                        Thread.sleep(10000);
-                    } catch (Exception e) {
-                        LOG.error("Error during interrupting thread.", e);
-                        return false;
-                    }
-                    break;
-                case PROTECTED:
-                    wiki.getWikiConfiguration().getLog().error(wiki, title + " is protected, cannot edit.");
-                    return false;
-                default:
-                    wiki.getWikiConfiguration().getLog().warn(wiki, "Got an error, retrying: " + i);
-            }
+        switch (postAction(wiki, "edit", true, parameterList).getValue1()) {
+            case SUCCESS:
+                return true;
+            case PROTECTED:
+                wiki.getWikiConfiguration().getLog().error(wiki, title + " is protected, cannot edit.");
+                return false;
+            default:
+                wiki.getWikiConfiguration().getLog().error(wiki, String.format("Could not edit '%s', aborting.", title));
+                return false;
         }
-
-        wiki.getWikiConfiguration().getLog().error(wiki, String.format("Could not edit '%s', aborting.", title));
-        return false;
     }
 
     /**
@@ -152,13 +144,7 @@ class WAction {
     protected static boolean undelete(Wiki wiki, String title, String reason) {
         wiki.getWikiConfiguration().getLog().info(wiki, "Restoring " + title);
 
-        for (int i = 0; i < 10; i++) {
-            if (postAction(wiki, "undelete", true, FL.produceMap(VAR_TITLE, title, "reason", reason)).getValue1() == ActionResult.NONE) {
-                return true;
-            }
-        }
-
-        return false;
+        return postAction(wiki, "undelete", true, FL.produceMap(VAR_TITLE, title, "reason", reason)).getValue1() == ActionResult.NONE;
     }
 
     /**
@@ -187,6 +173,7 @@ class WAction {
     protected static boolean upload(Wiki wiki, String title, String description, String summary, Path file) {
         wiki.getWikiConfiguration().getLog().info(wiki, "Uploading " + file);
 
+        RetryPolicy policy = wiki.getWikiConfiguration().getRetryPolicy();
         try {
             ChunkManager cm = new ChunkManager(file);
 
@@ -197,42 +184,31 @@ class WAction {
             while ((chunk = cm.nextChunk()) != null) {
                 wiki.getWikiConfiguration().getLog().fyi(wiki, String.format("Uploading chunk [%d of %d] of '%s'", cm.getChunkCount(), cm.getTotalChunks(), file));
 
-                Map<String, String> parameterList = FL.produceMap("format", "json", "filename", title, "token", wiki.getWikiConfiguration().getToken(), "ignorewarnings", "1",
+                Map<String, String> parameterList = FL.produceMap("format", "json", "formatversion", "2", "filename", title, "token", wiki.getWikiConfiguration().getToken(), "ignorewarnings", "1",
                         "stash", "1", "offset", "" + chunk.offset, "filesize", "" + chunk.filesize);
                 if (filekey != null) {
                     parameterList.put(VAR_FILEKEY, filekey);
                 }
 
-                for (int i = 0; i < 5; i++) {
-                    try {
-                        Response response = wiki.getApiclient().multiPartFilePOST(FL.produceMap("action", VAR_UPLOAD), parameterList, fileName, chunk.getBinaryData());
-                        if (!response.isSuccessful()) {
-                            wiki.getWikiConfiguration().getLog().error(wiki, "Bad response from server: " + response.code());
-                            continue;
-                        }
+                final Chunk c = chunk;
+                JsonObject reply = policy.execute(() -> uploadChunk(wiki, parameterList, fileName, c), policy::isUnsent,
+                        r -> r.has("error") && policy.isRetryable(ActionResult.wrap(r, VAR_UPLOAD)), r -> Duration.ZERO, r -> {
+                        });
 
-                        filekey = GSONP.getString(JsonParser.parseString(response.body().string()).getAsJsonObject().getAsJsonObject(VAR_UPLOAD), VAR_FILEKEY);
-                        if (filekey != null) {
-                            break;
-                        }
-                    } catch (Exception e) {
-                        wiki.getWikiConfiguration().getLog().error(wiki, "Encountered an error, retrying - " + i);
-                        LOG.error("", e);
-                    }
+                filekey = reply.has(VAR_UPLOAD) ? GSONP.getString(reply.getAsJsonObject(VAR_UPLOAD), VAR_FILEKEY) : null;
+                if (filekey == null) {
+                    wiki.getWikiConfiguration().getLog().error(wiki, String.format("Could not upload chunk %d of '%s', aborting.", cm.getChunkCount(), file));
+                    return false;
                 }
             }
 
-            for (int i = 0; i < 3; i++) {
-                wiki.getWikiConfiguration().getLog().info(wiki, String.format("Unstashing '%s' as '%s'", filekey, title));
-
-                if (postAction(wiki, VAR_UPLOAD, true, FL.produceMap("filename", title, "text", description, "comment", summary, VAR_FILEKEY, filekey,
-                        "ignorewarnings", "true")).getValue1() == ActionResult.SUCCESS) {
-                    return true;
-                }
-
-                wiki.getWikiConfiguration().getLog().error(wiki, "Encountered an error while unstashing, retrying - " + i);
+            wiki.getWikiConfiguration().getLog().info(wiki, String.format("Unstashing '%s' as '%s'", filekey, title));
+            if (postAction(wiki, VAR_UPLOAD, true, FL.produceMap("filename", title, "text", description, "comment", summary, VAR_FILEKEY, filekey,
+                    "ignorewarnings", "true")).getValue1() == ActionResult.SUCCESS) {
+                return true;
             }
 
+            wiki.getWikiConfiguration().getLog().error(wiki, String.format("Could not unstash '%s', aborting.", filekey));
             return false;
         } catch (Exception e) {
             LOG.error("", e);
@@ -240,6 +216,26 @@ class WAction {
         }
     }
 
+    /**
+     * Uploads a single chunk of a file to the stash.
+     *
+     * @param wiki          The Wiki to work on.
+     * @param parameterList The form parameters for the chunk.
+     * @param fileName      The system name of the file being uploaded.
+     * @param chunk         The Chunk to upload.
+     * @return The reply of the server.
+     * @throws IOException Network error, or if the server returned an error status.
+     */
+    private static JsonObject uploadChunk(Wiki wiki, Map<String, String> parameterList, String fileName, Chunk chunk) throws IOException {
+        Response response = wiki.getApiclient().multiPartFilePOST(FL.produceMap("action", VAR_UPLOAD), parameterList, fileName, chunk.getBinaryData());
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("Bad response from server: " + response.code());
+        }
+
+        return GSONP.parseResponseBody(response.body(), List.of(VAR_UPLOAD, "error"));
+    }
+
     /**
      * Represents the result of an action POSTed to a Wiki
      *
@@ -309,6 +305,9 @@ class WAction {
                         case "cascadeprotected":
                         case "protectedpage":
                             return PROTECTED;
+                        case "ratelimited":
+                        case "maxlag":
+                            return RATELIMITED;
                         default:
                             return ERROR;
                     }
@@ -2,7 +2,6 @@ package benjaminkomen.jwiki.core;
 
 import benjaminkomen.jwiki.util.FL;
 import benjaminkomen.jwiki.util.GSONP;
-import com.google.gson.JsonParser;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,8 +42,8 @@ public class WParser {
         try {
             XMLEventReader r = XMLInputFactory.newInstance()
                     .createXMLEventReader(new StringReader(GSONP
-                            .getString(GSONP.getNestedJsonObject(JsonParser.parseString(wiki.basicPOST("parse", queryParams).body().string()).getAsJsonObject(),
-                                    FL.toStringArrayList("parse", "parsetree")), "*")));
+                            .getContent(GSONP.parseResponseBody(wiki.basicPOST("parse", queryParams).body(), List.of("parse")).getAsJsonObject("parse"),
+                                    "parsetree")));
 
             WikiText root = new WikiText();
             while (r.hasNext()) {
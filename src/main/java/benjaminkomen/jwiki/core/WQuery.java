@@ -4,14 +4,22 @@ import benjaminkomen.jwiki.util.FL;
 import benjaminkomen.jwiki.util.GSONP;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 import com.google.gson.reflect.TypeToken;
 import lombok.Getter;
+import okhttp3.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Wraps the various functions of API functions of {@code action=query}.
@@ -27,6 +35,27 @@ class WQuery {
     private static final String VAR_REVISIONS = "revisions";
     private static final String VAR_TITLE = "title";
     private static final String VAR_TITLES = "titles";
+    private static final String VAR_GENERATOR = "generator";
+    private static final String VAR_CONTINUE = "continue";
+    private static final String VAR_ENDPOINT = "endpoint";
+
+    /**
+     * The top-level keys of a query Response which are decoded. Everything else (e.g. {@code warnings},
+     * {@code limits}) is skipped while reading the Response.
+     */
+    private static final Set<String> REPLY_KEYS = Set.of(VAR_QUERY, "continue", "query-continue", "batchcomplete", "error");
+
+    /**
+     * The default maximum size, in bytes, of a single API result ({@code $wgAPIMaxResultSize}). Larger results are
+     * split into continuation queries by the server.
+     */
+    private static final int MAX_RESULT_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Parameters which accept multiple values. When several QTemplate objects set one of these, their values are
+     * combined so that a single query runs all of the selected modules.
+     */
+    private static final Set<String> MULTI_VALUE_KEYS = Set.of("prop", "list", "meta", "type");
 
     /**
      * Default parameters for getting category size info
@@ -93,7 +122,7 @@ class WQuery {
      */
     public static final QTemplate IMAGEINFO = new QTemplate(
             FL.produceMap("prop", "imageinfo", "iiprop", "canonicaltitle|url|size|sha1|mime|user|timestamp|comment", VAR_TITLES, null), "iilimit",
-            "imageinfo");
+            "imageinfo", 0, 16 * 1024);
 
     /**
      * Default parameters for getting links to a page
@@ -120,7 +149,13 @@ class WQuery {
     /**
      * Default parameters for getting page text.
      */
-    public static final QTemplate PAGETEXT = new QTemplate(FL.produceMap("prop", VAR_REVISIONS, "rvprop", "content", VAR_TITLES, null), null);
+    public static final QTemplate PAGETEXT = new QTemplate(FL.produceMap("prop", VAR_REVISIONS, "rvprop", "ids|content", VAR_TITLES, null), null, null,
+            0, 32 * 1024);
+
+    /**
+     * Default parameters for getting basic page information, such as the id of the latest revision.
+     */
+    public static final QTemplate PAGEINFO = new QTemplate(FL.produceMap("prop", "info", VAR_TITLES, null), null);
 
     /**
      * Default parameters for listing protected titles.
@@ -173,7 +208,7 @@ class WQuery {
      * Default parameters for getting text extracts from a page
      */
     public static final QTemplate TEXTEXTRACTS = new QTemplate(
-            FL.produceMap("prop", "extracts", "exintro", "1", "explaintext", "1", VAR_TITLES, null), "exlimit", "extract");
+            FL.produceMap("prop", "extracts", "exintro", "1", "explaintext", "1", VAR_TITLES, null), "exlimit", "extract", 20, 0);
 
     /**
      * Default parameters for getting a csrf token.
@@ -190,6 +225,12 @@ class WQuery {
      */
     public static final QTemplate TOKENS_LOGIN_LEGACY = new QTemplate(FL.produceMap("prop", "info", "intoken", "edit"), null);
 
+    /**
+     * Default parameters for listing the pages which transclude a page. Mostly useful as a generator, see
+     * {@link QTemplate#asGenerator()}.
+     */
+    public static final QTemplate EMBEDDEDIN = new QTemplate(FL.produceMap("list", "embeddedin", "eititle", null), "eilimit", "embeddedin");
+
     /**
      * Default parameters for getting a page's transclusions.
      */
@@ -207,6 +248,11 @@ class WQuery {
      */
     public static final QTemplate USERINFO = new QTemplate(FL.produceMap("meta", "userinfo"), null);
 
+    /**
+     * Default parameters for getting the logged in user, their groups and rights, and a CSRF token in a single query.
+     */
+    public static final QTemplate SESSIONINFO = new QTemplate(FL.produceMap("meta", "userinfo|tokens", "uiprop", "groups|rights", "type", "csrf"), null);
+
     /**
      * Default parameters for listing users and their rights.
      */
@@ -227,7 +273,7 @@ class WQuery {
     /**
      * The master parameter list. Tracks current query status.
      */
-    private final Map<String, String> parameterList = FL.produceMap("action", VAR_QUERY, "format", "json");
+    private final Map<String, String> parameterList = FL.produceMap("action", VAR_QUERY, "format", "json", "formatversion", "2");
 
     /**
      * The List of limit Strings.
@@ -251,22 +297,62 @@ class WQuery {
     private int totalLimit = -1;
     private int currCount = 0;
 
+    /**
+     * The value of {@code currCount} before the most recent query was accounted for.
+     */
+    private int prevCount = 0;
+
+    /**
+     * The keys of the continuation parameters returned by the most recent query.
+     */
+    private final Set<String> continueKeys = new HashSet<>();
+
+    /**
+     * The name under which the continuation state of this WQuery is saved, or null if checkpoints are disabled.
+     */
+    private String checkpoint;
+
+    /**
+     * Flag indicating if the next continuation query should be sent as soon as the current one has been received.
+     */
+    private boolean prefetch;
+
+    /**
+     * The in-flight continuation query issued by prefetching, or null if there is none.
+     */
+    private CompletableFuture<JsonObject> pending;
+
+    /**
+     * The HTTP call behind {@code pending}. Cancelling it cancels the request.
+     */
+    private CompletableFuture<Response> pendingCall;
+
     /**
      * Constructor, creates a new WQuery
      *
      * @param wiki The Wiki object to perform queries with
-     * @param qut  The QueryUnitTemplate objects to instantiate this WQuery with.
+     * @param qut  The QueryUnitTemplate objects to instantiate this WQuery with. Modules selected by more than one of
+     *             these (e.g. {@code meta=siteinfo} and {@code meta=tokens}) are fused into a single query.
      */
     public WQuery(Wiki wiki, QTemplate... qut) {
         this.wiki = wiki;
         this.queryLimit = wiki.getWikiConfiguration().getMaxResultLimit();
+        this.prefetch = wiki.getWikiConfiguration().isPrefetchContinuations();
 
         for (QTemplate qt : qut) {
-            parameterList.putAll(qt.defaultFields);
+            qt.defaultFields.forEach((k, v) -> {
+                String current = parameterList.get(k);
+                parameterList.put(k, MULTI_VALUE_KEYS.contains(k) && current != null && v != null && !current.equals(v) ? current + "|" + v : v);
+            });
             if (qt.limString != null) {
                 limitStrings.add(qt.limString);
             }
         }
+
+        // prop modules run on the pages of the generator, not on titles
+        if (parameterList.containsKey(VAR_GENERATOR) && parameterList.get(VAR_TITLES) == null) {
+            parameterList.remove(VAR_TITLES);
+        }
     }
 
     /**
@@ -288,49 +374,300 @@ class WQuery {
      * @return True if this WQuery can still be used to make continuation queries.
      */
     public boolean has() {
-        return canContinue;
+        return canContinue || pending != null;
     }
 
     /**
-     * Attempts to perform the next query in this sequence.
+     * Performs the next query in this sequence. If it fails, then this WQuery is left unchanged, so calling this again
+     * repeats the query.
      *
-     * @return A JsonObject with the response from the server, or null if something went wrong.
+     * @return The response from the server.
+     * @throws NoSuchElementException If this WQuery has no queries remaining, see {@link #has()}.
+     * @throws IllegalStateException  If the query failed, i.e. the {@link RetryPolicy} gave up or the response could
+     *                                not be read.
      */
     public QReply next() {
         // sanity check
         if (parameterList.containsValue(null)) {
             throw new IllegalStateException(String.format("Fill in *all* the null fields -> %s", parameterList));
-        } else if (!canContinue) {
-            return null;
+        } else if (!has()) {
+            throw new NoSuchElementException("There are no more queries to make");
+        }
+
+        // everything before the query made here has been consumed, so it is where a restart should pick up
+        if (checkpoint != null) {
+            wiki.getWikiConfiguration().getCheckpointStore().save(checkpoint, exportCheckpoint());
         }
 
         JsonObject result;
 
         try {
-            final int increasedCount = currCount += queryLimit;
-            if (totalLimit > 0 && increasedCount > totalLimit) {
-                adjustLimit(queryLimit - (currCount - totalLimit));
-                canContinue = false;
+            if (pending != null) {
+                CompletableFuture<JsonObject> request = pending;
+                pending = null;
+                pendingCall = null;
+                try {
+                    result = request.join();
+                } catch (CompletionException e) {
+                    // the continuation parameters are unchanged, so re-send the prefetched query rather than lose its page
+                    LOG.warn("Prefetched query failed, sending it again", e.getCause());
+                    result = wiki.getApiclient().basicGETJson(parameterList, REPLY_KEYS);
+                }
+            } else {
+                reserveNext();
+                result = wiki.getApiclient().basicGETJson(parameterList, REPLY_KEYS);
             }
 
-            result = JsonParser.parseString(wiki.getApiclient().basicGET(parameterList).body().string()).getAsJsonObject();
             if (result.has("continue")) {
-                parameterList.putAll(GSONP.getGson().fromJson(result.getAsJsonObject("continue"), strMapT));
+                setContinuation(GSONP.getGson().fromJson(result.getAsJsonObject("continue"), strMapT));
             } else if (result.has("query-continue")) {
-                parameterList.putAll(GSONP.getGson().fromJson(result.getAsJsonObject("query-continue").getAsJsonObject(VAR_CATEGORY_MEMBERS), strMapT));
+                setContinuation(GSONP.getGson().fromJson(result.getAsJsonObject("query-continue").getAsJsonObject(VAR_CATEGORY_MEMBERS), strMapT));
             } else {
                 canContinue = false;
             }
 
+            if (prefetch && canContinue) {
+                reserveNext();
+                sendPrefetch();
+            }
+
             if (wiki.getWikiConfiguration().isDebug()) {
                 wiki.getWikiConfiguration().getLog().debug(wiki, GSONP.getGsonPrettyPrint().toJson(result));
             }
 
+            TitleCache titleCache = wiki.getWikiConfiguration().getTitleCache();
+            if (titleCache != null) {
+                titleCache.learn(result);
+            }
+
             return new QReply(result);
         } catch (Exception e) {
             LOG.error("Error during performing next query", e);
+            throw new IllegalStateException("Could not fetch the next set of results", e);
+        }
+    }
+
+    /**
+     * Accounts for the items which will be returned by the next query. If this would exceed {@code totalLimit}, then
+     * the limit of the next query is lowered and it is marked as the last one.
+     */
+    private void reserveNext() {
+        prevCount = currCount;
+        final int increasedCount = currCount += queryLimit;
+        if (totalLimit > 0 && increasedCount > totalLimit) {
+            adjustLimit(queryLimit - (currCount - totalLimit));
+            canContinue = false;
+        }
+    }
+
+    /**
+     * Replaces the continuation parameters of the previous query with those of the most recent one. Parameters which
+     * are no longer returned, e.g. those of a {@code prop} module which was exhausted before its generator advanced,
+     * must not be sent again.
+     *
+     * @param continuation The continuation parameters returned by the server.
+     */
+    private void setContinuation(Map<String, String> continuation) {
+        continueKeys.forEach(parameterList::remove);
+        continueKeys.clear();
+
+        parameterList.putAll(continuation);
+        continueKeys.addAll(continuation.keySet());
+    }
+
+    /**
+     * Exports the continuation state of this WQuery. Passing the result to {@link #resume(Map)} on an otherwise
+     * identical WQuery makes it continue with the first query whose reply has not been returned by {@link #next()}.
+     *
+     * @return The continuation parameters of this WQuery, which are empty if it has not made any queries yet, or null
+     * if it is exhausted.
+     */
+    public Map<String, String> getContinuation() {
+        if (!has()) {
             return null;
         }
+
+        Map<String, String> continuation = new HashMap<>();
+        continueKeys.forEach(k -> continuation.put(k, parameterList.get(k)));
+        return continuation;
+    }
+
+    /**
+     * Resumes this WQuery from continuation state exported with {@link #getContinuation()}.
+     *
+     * @param continuation The continuation parameters to resume from.
+     * @return This WQuery. Useful for chaining.
+     */
+    public WQuery resume(Map<String, String> continuation) {
+        setContinuation(continuation);
+        canContinue = true;
+        refreshPrefetch();
+        return this;
+    }
+
+    /**
+     * Enables checkpoints for this WQuery. If the Wiki's {@link CheckpointStore} has a checkpoint named {@code name}
+     * which was saved by an identical query, then this WQuery resumes from it. Afterwards, the continuation state is
+     * saved to the checkpoint before each query, and the checkpoint is removed once this WQuery has been exhausted by
+     * {@link #stream(Function)}. Call this after all other parameters have been set.
+     *
+     * @param name The name of the checkpoint. Use a distinct name for each enumeration.
+     * @return This WQuery. Useful for chaining.
+     */
+    public WQuery checkpoint(String name) {
+        CheckpointStore store = wiki.getWikiConfiguration().getCheckpointStore();
+        if (store == null) {
+            wiki.getWikiConfiguration().getLog().warn(wiki, "No checkpoint store is configured, ignoring checkpoint " + name);
+            return this;
+        }
+
+        JsonObject saved = store.load(name);
+        if (saved != null) {
+            JsonObject current = exportCheckpoint();
+            if (current.get(VAR_ENDPOINT).equals(saved.get(VAR_ENDPOINT)) && current.get(VAR_QUERY).equals(saved.get(VAR_QUERY))) {
+                wiki.getWikiConfiguration().getLog().info(wiki, "Resuming from checkpoint " + name);
+                currCount = saved.get("count").getAsInt();
+                resume(GSONP.getGson().fromJson(saved.getAsJsonObject(VAR_CONTINUE), strMapT));
+            } else {
+                wiki.getWikiConfiguration().getLog().warn(wiki, String.format("Checkpoint %s belongs to another query, ignoring it", name));
+            }
+        }
+
+        checkpoint = name;
+        return this;
+    }
+
+    /**
+     * Removes the checkpoint of this WQuery, if it has one, once it has been exhausted.
+     */
+    private void completeCheckpoint() {
+        if (checkpoint != null && !has()) {
+            wiki.getWikiConfiguration().getCheckpointStore().clear(checkpoint);
+            checkpoint = null;
+        }
+    }
+
+    /**
+     * Creates a checkpoint of this WQuery, for use with {@link CheckpointStore}. Besides the continuation state, this
+     * records the endpoint and parameters of the query, so that a checkpoint is never resumed by a different query.
+     *
+     * @return A JsonObject describing the current state of this WQuery.
+     */
+    private JsonObject exportCheckpoint() {
+        Map<String, String> query = new TreeMap<>(parameterList);
+        continueKeys.forEach(query::remove);
+        limitStrings.forEach(query::remove);
+
+        JsonObject state = new JsonObject();
+        state.addProperty(VAR_ENDPOINT, wiki.getWikiConfiguration().getBaseURL().toString());
+        state.add(VAR_QUERY, GSONP.getGson().toJsonTree(query));
+        state.add(VAR_CONTINUE, GSONP.getGson().toJsonTree(new TreeMap<>(Objects.requireNonNullElse(getContinuation(), Map.of()))));
+        state.addProperty("count", pending != null ? prevCount : currCount);
+        return state;
+    }
+
+    /**
+     * Reads and closes a Response from the server. The body is decoded straight from the network stream and only the
+     * parts of it which are used by QReply are kept.
+     *
+     * @param response The Response to read
+     * @return The body of {@code response} as a JsonObject.
+     */
+    private static JsonObject parse(Response response) {
+        try (response) {
+            return GSONP.parseResponseBody(response.body(), REPLY_KEYS);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Enables or disables prefetching for this WQuery. When enabled, the query for the next set of results is sent in
+     * the background as soon as {@link #next()} has received the current one, hiding network latency while the caller
+     * processes the current QReply. Defaults to the Wiki's {@code prefetchContinuations} setting.
+     *
+     * @param prefetch Set true to enable prefetching
+     * @return This WQuery. Useful for chaining.
+     */
+    public WQuery prefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * Re-sends the prefetched query, if there is one, so that it reflects changes made to the parameter list since it
+     * was sent. The stale query is cancelled first, so that it does not keep a connection or rate limit slot busy.
+     */
+    private void refreshPrefetch() {
+        if (pending != null) {
+            pendingCall.cancel(true);
+            sendPrefetch();
+        }
+    }
+
+    /**
+     * Sends the next query in the background. Its Response is decoded as soon as it arrives.
+     */
+    private void sendPrefetch() {
+        pendingCall = wiki.getApiclient().basicGETAsync(parameterList);
+        pending = pendingCall.thenApply(WQuery::parse);
+    }
+
+    /**
+     * Creates a lazily evaluated Stream over the results of this WQuery. Continuation queries are only made when the
+     * items of the previous Response have been consumed, so memory use is bounded by the size of a single Response and
+     * short-circuiting operations (e.g. {@code findFirst()}, {@code limit()}) stop further queries from being made.
+     *
+     * @param <T>       The type of item in the resulting Stream
+     * @param extractor Extracts the items of interest from each QReply.
+     * @return A sequential, ordered Stream of the items extracted from each QReply.
+     */
+    public <T> Stream<T> stream(Function<QReply, List<T>> extractor) {
+        return StreamSupport.stream(new ReplySpliterator<>(this, extractor), false);
+    }
+
+    /**
+     * Creates a lazily evaluated Stream over the pages returned by this WQuery, which should use a generator (see
+     * {@link QTemplate#asGenerator()}) together with one or more {@code prop} modules. The properties of a page may be
+     * spread over several continuation queries, so pages are merged and only emitted once MediaWiki reports that the
+     * current batch of generated pages is complete.
+     *
+     * @return A sequential Stream of page JsonObject, each with all the properties which were fetched for it.
+     */
+    public Stream<JsonObject> streamPages() {
+        Map<String, JsonObject> batch = new LinkedHashMap<>();
+
+        return stream(r -> {
+            for (JsonObject page : GSONP.getJsonObjects(r.metaComp("pages"))) {
+                mergePage(batch.computeIfAbsent(GSONP.getString(page, VAR_TITLE), k -> new JsonObject()), page);
+            }
+
+            if (!r.getInput().has("batchcomplete") && has()) {
+                return Collections.emptyList();
+            }
+
+            List<JsonObject> pages = new ArrayList<>(batch.values());
+            batch.clear();
+            return pages;
+        });
+    }
+
+    /**
+     * Merges the properties of a page returned by a continuation query into the record of that page. Lists, such as
+     * {@code categories}, are appended to; any other property replaces the one already in the record.
+     *
+     * @param record The record of the page so far
+     * @param page   The page JsonObject from a continuation query.
+     */
+    protected static void mergePage(JsonObject record, JsonObject page) {
+        page.entrySet().forEach(e -> {
+            JsonElement current = record.get(e.getKey());
+            if (current != null && current.isJsonArray() && e.getValue().isJsonArray()) {
+                current.getAsJsonArray().addAll(e.getValue().getAsJsonArray());
+            } else {
+                record.add(e.getKey(), e.getValue().deepCopy());
+            }
+        });
     }
 
     /**
@@ -342,6 +679,7 @@ class WQuery {
      */
     public WQuery set(String key, String value) {
         parameterList.put(key, value);
+        refreshPrefetch();
         return this;
     }
 
@@ -377,9 +715,60 @@ class WQuery {
             parameterList.put(s, limitString);
         }
 
+        refreshPrefetch();
         return this;
     }
 
+    /**
+     * A Spliterator which pages through the continuations of a WQuery one QReply at a time.
+     *
+     * @param <T> The type of item produced by this ReplySpliterator
+     * @author Fastily
+     */
+    private static class ReplySpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        /**
+         * The WQuery to page through
+         */
+        private final WQuery wq;
+
+        /**
+         * Extracts the items of interest from each QReply.
+         */
+        private final Function<QReply, List<T>> extractor;
+
+        /**
+         * The items of the most recently fetched QReply which have not been consumed yet.
+         */
+        private Iterator<T> buffer = Collections.emptyIterator();
+
+        /**
+         * Constructor, creates a new ReplySpliterator
+         *
+         * @param wq        The WQuery to page through
+         * @param extractor Extracts the items of interest from each QReply.
+         */
+        private ReplySpliterator(WQuery wq, Function<QReply, List<T>> extractor) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.wq = wq;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (!buffer.hasNext()) {
+                if (!wq.has()) {
+                    wq.completeCheckpoint();
+                    return false;
+                }
+
+                buffer = extractor.apply(wq.next()).iterator();
+            }
+
+            action.accept(buffer.next());
+            return true;
+        }
+    }
+
     /**
      * Stores parameter definition rules for a given query and can use these rules to generate a QueryUnit.
      *
@@ -402,6 +791,18 @@ class WQuery {
          */
         private final String id;
 
+        /**
+         * The maximum number of titles the module of this query returns results for in a single request, regardless
+         * of the user's rights. 0 if the module has no such cap.
+         */
+        private final int maxTitles;
+
+        /**
+         * The estimated size, in bytes, of the result for a single title. Used to keep multi-title responses under the
+         * server's maximum result size. 0 if results are small.
+         */
+        private final int bytesPerTitle;
+
         /**
          * Constructor, creates a new QueryUnitTemplate
          *
@@ -420,14 +821,71 @@ class WQuery {
          * @param id            The id to use to lookup a query result for queries created with this Object.
          */
         public QTemplate(Map<String, String> defaultFields, String limString, String id) {
+            this(defaultFields, limString, id, 0, 0);
+        }
+
+        /**
+         * Constructor, creates a new QueryUnitTemplate with a limit String and batch limits for multi-title queries.
+         *
+         * @param defaultFields The default parameters for the query described by this QueryUnitTemplate.
+         * @param limString     The limit String parameter. Optional, set null to disable.
+         * @param id            The id to use to lookup a query result for queries created with this Object.
+         * @param maxTitles     The maximum number of titles the module returns results for per request. Set 0 to
+         *                      disable.
+         * @param bytesPerTitle The estimated size, in bytes, of the result for a single title. Set 0 to disable.
+         */
+        public QTemplate(Map<String, String> defaultFields, String limString, String id, int maxTitles, int bytesPerTitle) {
             this.defaultFields = defaultFields;
             this.id = id;
+            this.maxTitles = maxTitles;
+            this.bytesPerTitle = bytesPerTitle;
 
             this.limString = limString;
             if (limString != null) {
                 defaultFields.put(limString, "max");
             }
         }
+
+        /**
+         * Determines how many titles to send per request when running this query for many titles. This is the Wiki's
+         * {@code groupQueryMax}, lowered to the module's own cap and to the number of titles whose results are expected
+         * to fit in {@link #MAX_RESULT_SIZE}, so that batches do not spill over into continuation queries.
+         *
+         * @param wiki The Wiki which will run the query.
+         * @return The number of titles to send per request.
+         */
+        int batchSize(Wiki wiki) {
+            int size = wiki.getWikiConfiguration().getGroupQueryMax();
+            if (maxTitles > 0) {
+                size = Math.min(size, maxTitles);
+            }
+            if (bytesPerTitle > 0) {
+                size = Math.min(size, Math.max(1, MAX_RESULT_SIZE / bytesPerTitle));
+            }
+
+            return size;
+        }
+
+        /**
+         * Derives a generator from this QTemplate, which must describe a {@code list} module. The list then supplies
+         * the pages for the {@code prop} modules it is combined with in a WQuery, so that a list and the properties of
+         * its pages are fetched in the same continuation sequence. Each parameter of the list is prefixed with
+         * {@code g}, e.g. {@code cmtitle} becomes {@code gcmtitle}.
+         *
+         * @return A new QTemplate which uses this {@code list} module as a generator.
+         */
+        protected QTemplate asGenerator() {
+            Map<String, String> fields = new HashMap<>();
+            defaultFields.forEach((k, v) -> {
+                if ("list".equals(k)) {
+                    fields.put(VAR_GENERATOR, v);
+                } else if (!k.equals(limString)) {
+                    fields.put("g" + k, v);
+                }
+            });
+
+            return new QTemplate(fields, limString == null ? null : "g" + limString, id);
+        }
     }
 
     /**
@@ -489,18 +947,38 @@ class WQuery {
         protected Map<String, JsonElement> propComp(String kk, String vk) {
             Map<String, JsonElement> m = new HashMap<>();
 
-            JsonObject x = GSONP.getNestedJsonObject(input, defaultPropPTJ);
-            if (x == null) {
+            if (!GSONP.nestedHas(input, defaultPropPTJ)) {
                 return m;
             }
 
-            for (JsonObject jo : GSONP.convertJsonObjectToList(x)) {
+            for (JsonObject jo : GSONP.getJsonObjects(input.getAsJsonObject(VAR_QUERY).get("pages"))) {
                 m.put(GSONP.getString(jo, kk), jo.get(vk));
             }
 
             return normalize(m);
         }
 
+        /**
+         * Performs {@code prop} query Response comprehension for queries which select several {@code prop} modules.
+         * Collects each returned page, with all of its properties, in a HashMap. Title normalization is automatically
+         * applied.
+         *
+         * @return A HashMap where each key is a title and each value is the page JsonObject returned for it.
+         */
+        protected Map<String, JsonObject> pageComp() {
+            Map<String, JsonObject> m = new HashMap<>();
+
+            if (!GSONP.nestedHas(input, defaultPropPTJ)) {
+                return m;
+            }
+
+            for (JsonObject jo : GSONP.getJsonObjects(input.getAsJsonObject(VAR_QUERY).get("pages"))) {
+                m.put(GSONP.getString(jo, "title"), jo);
+            }
+
+            return normalize(m);
+        }
+
         /**
          * Performs simple {@code meta} query Response comprehension.
          *
@@ -13,6 +13,7 @@ import benjaminkomen.jwiki.util.Tuple;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
 import lombok.Getter;
 import okhttp3.HttpUrl;
 import okhttp3.Response;
@@ -20,18 +21,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Main entry point of jwiki. This class aggregates most of the queries/actions which jwiki can perform on a wiki. All
@@ -45,6 +65,8 @@ public class Wiki {
     private static final Logger LOG = LoggerFactory.getLogger(Wiki.class);
     private static final String LOGIN = "login";
     private static final String LGTOKEN = "lgtoken";
+    private static final String VAR_ENDPOINT = "endpoint";
+    private static final String VAR_COOKIES = "cookies";
 
     /**
      * Our list of currently logged in Wiki's associated with this object. Useful for global operations.
@@ -65,6 +87,11 @@ public class Wiki {
      * Used to make calls to and from the API.
      */
     private final ApiClient apiclient;
+
+    /**
+     * The on-disk cache of siteinfo used when creating this Wiki and the Wiki objects it spawns. Null if disabled.
+     */
+    private final SiteInfoCache siteInfoCache;
     private static final String VAR_TITLE = "title";
     private static final String VAR_NEWER = "newer";
 
@@ -76,9 +103,9 @@ public class Wiki {
      */
     public static class Builder {
         /**
-         * The Proxy to use
+         * The HTTP settings to use
          */
-        private Proxy proxy;
+        private final ApiClient.Settings httpSettings = new ApiClient.Settings();
 
         /**
          * The api endpoint to use
@@ -95,6 +122,46 @@ public class Wiki {
          */
         private String userAgent;
 
+        /**
+         * The maximum number of multi-title query groups to dispatch concurrently.
+         */
+        private int queryParallelism = 1;
+
+        /**
+         * Flag indicating whether continuation queries should be prefetched.
+         */
+        private boolean prefetchContinuations;
+
+        /**
+         * Decides how failed requests and actions are retried.
+         */
+        private RetryPolicy retryPolicy;
+
+        /**
+         * The on-disk siteinfo cache to use, or null to disable it.
+         */
+        private SiteInfoCache siteInfoCache;
+
+        /**
+         * The file to restore a session from and to save new sessions to, or null to disable.
+         */
+        private Path sessionFile;
+
+        /**
+         * The directory to store enumeration checkpoints in, or null to disable.
+         */
+        private Path checkpointDirectory;
+
+        /**
+         * The maximum size, in bytes, of the page text cache, or 0 to disable it.
+         */
+        private long pageTextCacheBytes;
+
+        /**
+         * The maximum number of titles whose normalization and redirect are cached, or 0 to disable the cache.
+         */
+        private int titleCacheEntries;
+
         /**
          * Username to login as.
          */
@@ -130,7 +197,93 @@ public class Wiki {
          * @return This Builder
          */
         public Builder withProxy(Proxy proxy) {
-            this.proxy = proxy;
+            httpSettings.proxy = proxy;
+            return this;
+        }
+
+        /**
+         * Configures whether the Wiki to be created may use HTTP/2. With HTTP/2, concurrent requests are multiplexed over
+         * a single connection instead of opening a new connection per request. Servers which do not support HTTP/2 are
+         * still contacted over HTTP/1.1. Enabled by default.
+         *
+         * @param http2 Set false to only use HTTP/1.1
+         * @return This Builder
+         */
+        public Builder withHttp2(boolean http2) {
+            httpSettings.http2 = http2;
+            return this;
+        }
+
+        /**
+         * Configures the connection pool of the Wiki to be created. The default is 16 idle connections kept alive for 5
+         * minutes.
+         *
+         * @param maxIdleConnections The maximum number of idle connections to keep
+         * @param keepAlive          How long to keep an idle connection alive for
+         * @return This Builder
+         */
+        public Builder withConnectionPool(int maxIdleConnections, Duration keepAlive) {
+            httpSettings.maxIdleConnections = maxIdleConnections;
+            httpSettings.keepAlive = keepAlive;
+            return this;
+        }
+
+        /**
+         * Configures the maximum number of concurrent requests the Wiki to be created may make to its host. Additional
+         * asynchronous requests are queued until a request completes. Requests waiting on a rate limit, a server-side
+         * pause or a retry delay keep their slot, so a throttled host can use up this limit. The default is 64.
+         *
+         * @param maxRequestsPerHost The maximum number of concurrent requests
+         * @return This Builder
+         */
+        public Builder withMaxRequestsPerHost(int maxRequestsPerHost) {
+            httpSettings.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to send no more than {@code requestsPerSecond} requests per second for the
+         * specified API action. Requests beyond this rate wait for their turn instead of being sent. If the server
+         * throttles the action anyway, its rate is halved and then slowly recovers. Actions are unlimited by default.
+         *
+         * @param action           The API action to limit (e.g. {@code edit}, {@code query}), or null to set the limit
+         *                         of all actions which were not configured explicitly.
+         * @param requestsPerSecond The maximum number of requests per second. Set &le; 0 for unlimited.
+         * @return This Builder
+         */
+        public Builder withRateLimit(String action, double requestsPerSecond) {
+            if (action == null) {
+                httpSettings.defaultRateLimit = requestsPerSecond;
+            } else {
+                httpSettings.rateLimits.put(action, requestsPerSecond);
+            }
+            return this;
+        }
+
+        /**
+         * Configures the {@code maxlag} value the Wiki to be created sends with each request. If the server's
+         * replication lag exceeds this, all requests to it are paused for as long as the server's {@code Retry-After}
+         * header specifies and then retried. Disabled by default; 5 seconds is the value recommended for bots.
+         *
+         * @param maxlag The {@code maxlag} value, in seconds. Set negative to disable.
+         * @return This Builder
+         */
+        public Builder withMaxlag(int maxlag) {
+            httpSettings.maxlag = maxlag;
+            return this;
+        }
+
+        /**
+         * Configures the connect and read timeouts of the Wiki to be created. The defaults are 10 seconds and 2 minutes,
+         * respectively.
+         *
+         * @param connectTimeout The timeout for establishing new connections
+         * @param readTimeout    The timeout for reading from a connection
+         * @return This Builder
+         */
+        public Builder withTimeouts(Duration connectTimeout, Duration readTimeout) {
+            httpSettings.connectTimeout = connectTimeout;
+            httpSettings.readTimeout = readTimeout;
             return this;
         }
 
@@ -169,6 +322,124 @@ public class Wiki {
             return this;
         }
 
+        /**
+         * Configures the Wiki to be created to dispatch up to {@code queryParallelism} groups of titles concurrently
+         * when using the multi-title queries in {@link MQuery}. Results are merged in the same order as the titles were
+         * passed in. If a group fails, the query fails: the remaining groups are still run, then the first failure is
+         * thrown and the results of the other groups are discarded. The default is 1 (sequential), in which case the
+         * query stops at the first failing group.
+         *
+         * @param queryParallelism The maximum number of groups which all multi-title queries of the Wiki run at once.
+         * @return This Builder
+         */
+        public Builder withQueryParallelism(int queryParallelism) {
+            this.queryParallelism = queryParallelism;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to prefetch continuation queries. When enabled, long enumerations (e.g.
+         * {@link Wiki#allPages(String, boolean, boolean, int, NS)}, {@link Wiki#getRecentChanges(Instant, Instant)})
+         * request the next set of results in the background while the current set is being processed. Disabled by
+         * default.
+         *
+         * @param prefetchContinuations Set true to enable prefetching of continuation queries.
+         * @return This Builder
+         */
+        public Builder withContinuationPrefetch(boolean prefetchContinuations) {
+            this.prefetchContinuations = prefetchContinuations;
+            return this;
+        }
+
+        /**
+         * Configures how the Wiki to be created retries failed requests. {@code GET} requests are retried on network
+         * errors and transient server errors, and actions (e.g. edits, uploads) are retried on network errors and when
+         * they were rate limited. Defaults to {@link RetryPolicy#DEFAULT}.
+         *
+         * @param retryPolicy The RetryPolicy to use. Use {@link RetryPolicy#NEVER} to disable retries.
+         * @return This Builder
+         */
+        public Builder withRetryPolicy(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created, and the Wiki objects it spawns with {@link Wiki#getWiki(String)}, to cache
+         * the siteinfo which is fetched when a Wiki is created (e.g. namespaces) in {@code directory}. Cached siteinfo
+         * is used without contacting the server until it is older than {@code ttl}, after which it is fetched again.
+         * Disabled by default.
+         *
+         * @param directory The directory to store cached siteinfo in. This is created if it does not exist.
+         * @param ttl       The amount of time for which cached siteinfo is used before it is fetched again.
+         * @return This Builder
+         */
+        public Builder withSiteInfoCache(Path directory, Duration ttl) {
+            this.siteInfoCache = new SiteInfoCache(directory, ttl);
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to save checkpoints of enumerations in {@code directory}. Enumerations
+         * which are given a checkpoint name, e.g. with
+         * {@link Wiki#streamAllPages(String, boolean, boolean, int, NS, String)}, then resume where they stopped if
+         * they were interrupted, instead of starting over. Disabled by default.
+         *
+         * @param directory The directory to store checkpoints in. This is created if it does not exist.
+         * @return This Builder
+         * @see CheckpointStore
+         */
+        public Builder withCheckpoints(Path directory) {
+            this.checkpointDirectory = directory;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to cache the text of pages in memory, up to about {@code maxBytes}. Cached
+         * text is only returned by {@link Wiki#getPageText(String)} and {@link MQuery#getPageText(Wiki, Collection)}
+         * if it is still the latest revision of its page, which is checked with a single cheap query per batch of
+         * titles. Disabled by default.
+         *
+         * @param maxBytes The maximum estimated size of the cached text, in bytes. The least recently used pages are
+         *                 evicted beyond this.
+         * @return This Builder
+         * @see PageTextCache
+         */
+        public Builder withPageTextCache(long maxBytes) {
+            this.pageTextCacheBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to remember the title normalizations and redirects in every query response.
+         * {@link Wiki#resolveRedirect(String)} and {@link MQuery#resolveRedirects(Wiki, Collection)} then only query
+         * titles which were not seen before. The least recently used titles are forgotten once {@code maxEntries} are
+         * cached. Disabled by default.
+         *
+         * @param maxEntries The maximum number of titles to cache, or 0 to disable the cache.
+         * @return This Builder
+         * @see TitleCache
+         */
+        public Builder withTitleCache(int maxEntries) {
+            this.titleCacheEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Configures the Wiki to be created to reuse the login session saved in {@code sessionFile}. If the file exists
+         * and its session is still valid, it is restored with a single request instead of logging in. Otherwise, the
+         * credentials set with {@link #withLogin(String, String)} are used to log in, and the new session is saved to
+         * {@code sessionFile}. The file contains session cookies, so keep it private.
+         *
+         * @param sessionFile The file to restore a session from and to save new sessions to.
+         * @return This Builder
+         * @see Wiki#saveSession(Path)
+         */
+        public Builder withSession(Path sessionFile) {
+            this.sessionFile = sessionFile;
+            return this;
+        }
+
         /**
          * Configures the Wiki to be created with the specified username and password combination. Login will be attempted
          * when {@link #build()} is called.
@@ -195,13 +466,47 @@ public class Wiki {
                 withDomain("en.wikipedia.org");
             }
 
-            Wiki wiki = new Wiki(username, password, apiEndpoint, proxy, null, enableLogging);
+            boolean restore = sessionFile != null && Files.isRegularFile(sessionFile);
+            Wiki wiki = new Wiki(restore ? null : username, restore ? null : password, apiEndpoint, httpSettings, siteInfoCache, null, enableLogging);
+
+            // without a session to restore, the constructor already logged in with the credentials
+            boolean freshLogin = !restore;
+            if (restore && !wiki.restoreSession(sessionFile) && username != null && password != null) {
+                if (!wiki.login(username, password)) {
+                    throw new SecurityException(String.format("Failed to log-in as %s @ %s", username, wiki.getWikiConfiguration().getHostname()));
+                }
+
+                freshLogin = true;
+            }
+
+            if (sessionFile != null && freshLogin && wiki.getWikiConfiguration().getUname() != null) {
+                wiki.saveSession(sessionFile);
+            }
 
             // apply post-create settings
             if (userAgent != null) {
                 wiki.getWikiConfiguration().setUserAgent(userAgent);
             }
 
+            wiki.getWikiConfiguration().setQueryParallelism(queryParallelism);
+            wiki.getWikiConfiguration().setPrefetchContinuations(prefetchContinuations);
+
+            if (retryPolicy != null) {
+                wiki.getWikiConfiguration().setRetryPolicy(retryPolicy);
+            }
+
+            if (checkpointDirectory != null) {
+                wiki.getWikiConfiguration().setCheckpointStore(new CheckpointStore(checkpointDirectory));
+            }
+
+            if (pageTextCacheBytes > 0) {
+                wiki.getWikiConfiguration().setPageTextCache(new PageTextCache(pageTextCacheBytes));
+            }
+
+            if (titleCacheEntries > 0) {
+                wiki.getWikiConfiguration().setTitleCache(new TitleCache(titleCacheEntries));
+            }
+
             return wiki;
         }
     }
@@ -213,29 +518,77 @@ public class Wiki {
      * @param user          The username to use. Optional - set null to disable.
      * @param password      The password to login with. Optional - depends on user not being null, set null to disable.
      * @param baseURL       The URL pointing to the target MediaWiki API endpoint.
-     * @param proxy         The Proxy to use. Optional - set null to disable.
+     * @param httpSettings  The HTTP settings to use. Ignored if {@code parent} is set.
+     * @param siteInfoCache The on-disk siteinfo cache to use, or null to disable it. Ignored if {@code parent} is set.
      * @param parent        The parent Wiki which spawned this Wiki using {@code getWiki()}. If this is the first Wiki, disable
      *                      with null.
      * @param enableLogging Set true to enable std err log messages. Set false to disable std err log messages.
      */
-    private Wiki(String user, String password, HttpUrl baseURL, Proxy proxy, Wiki parent, boolean enableLogging) {
+    private Wiki(String user, String password, HttpUrl baseURL, ApiClient.Settings httpSettings, SiteInfoCache siteInfoCache, Wiki parent,
+                 boolean enableLogging) {
         wikiConfiguration = new Conf(baseURL, new ColorLog(enableLogging));
+        this.siteInfoCache = parent != null ? parent.siteInfoCache : siteInfoCache;
+
+        // namespaces are fused into the first bootstrap query, unless they are cached
+        JsonObject namespaces = this.siteInfoCache != null ? this.siteInfoCache.getIfFresh(baseURL) : null;
+        JsonObject query = null;
 
         // CentralAuth login
         if (parent != null) {
             wikis = parent.wikis;
             apiclient = new ApiClient(parent, this);
 
-            refreshLoginStatus();
+            query = bootstrapQuery(namespaces == null, WQuery.SESSIONINFO);
+            applySessionInfo(query);
         } else {
-            apiclient = new ApiClient(this, proxy);
+            apiclient = new ApiClient(this, httpSettings);
 
-            if (user != null && password != null && !login(user, password))
-                throw new SecurityException(String.format("Failed to log-in as %s @ %s", wikiConfiguration.getUname(), wikiConfiguration.getHostname()));
+            if (user != null && password != null) {
+                query = bootstrapQuery(namespaces == null, WQuery.TOKENS_LOGIN_NEW);
+                if (!login(user, password, GSONP.getString(query.getAsJsonObject("tokens"), "logintoken"))) {
+                    throw new SecurityException(String.format("Failed to log-in as %s @ %s", user, wikiConfiguration.getHostname()));
+                }
+            }
         }
 
+        if (namespaces == null && query != null && query.has("namespaces")) {
+            namespaces = new JsonObject();
+            namespaces.add("namespaces", query.get("namespaces"));
+            namespaces.add("namespacealiases", query.get("namespacealiases"));
+
+            if (this.siteInfoCache != null) {
+                this.siteInfoCache.put(baseURL, namespaces);
+            }
+        } else if (namespaces == null) {
+            namespaces = this.siteInfoCache != null ? this.siteInfoCache.get(baseURL, this::fetchNamespaces) : fetchNamespaces();
+        }
+
+        namespaceManager = new NS.NSManager(namespaces);
+    }
+
+    /**
+     * Sends a query needed to set up this Wiki, fusing the namespace query into it if requested.
+     *
+     * @param withNamespaces Set true to also fetch the namespaces and namespace aliases of this Wiki.
+     * @param qt             The QTemplate of the query to send.
+     * @return The {@code query} JsonObject of the reply.
+     */
+    private JsonObject bootstrapQuery(boolean withNamespaces, WQuery.QTemplate qt) {
+        if (withNamespaces) {
+            wikiConfiguration.getLog().info(this, "Fetching Namespace List");
+        }
+
+        return (withNamespaces ? new WQuery(this, WQuery.NAMESPACES, qt) : new WQuery(this, qt)).next().getInput().getAsJsonObject("query");
+    }
+
+    /**
+     * Fetches the namespaces and namespace aliases of this Wiki from the server.
+     *
+     * @return A JsonObject with the {@code namespaces} and {@code namespacealiases} of this Wiki.
+     */
+    private JsonObject fetchNamespaces() {
         wikiConfiguration.getLog().info(this, "Fetching Namespace List");
-        namespaceManager = new NS.NSManager(new WQuery(this, WQuery.NAMESPACES).next().getInput().getAsJsonObject("query"));
+        return new WQuery(this, WQuery.NAMESPACES).next().getInput().getAsJsonObject("query");
     }
 
     /* //////////////////////////////////////////////////////////////////////////////// */
@@ -258,7 +611,67 @@ public class Wiki {
             return true;
         }
 
+        String loginToken = null;
+        try {
+            loginToken = GSONP.getString(new WQuery(this, WQuery.TOKENS_LOGIN_NEW).next().metaComp("tokens").getAsJsonObject(), "logintoken");
+        } catch (Exception e) {
+            LOG.debug("Could not get a login token, falling back to legacy login", e);
+        }
+
+        return login(user, password, loginToken);
+    }
+
+    /**
+     * Performs a login with the specified username, password and login token. A logged in session needs two more
+     * requests: the login itself, and a query for the user's groups and CSRF token.
+     * <p>
+     * Together with the request for the login token, these are three round trips which cannot be sent in parallel.
+     * The login token is tied to the anonymous session cookie set by the reply carrying it, so it must arrive before
+     * the login is posted. The user's groups and CSRF token belong to the logged in session, whose cookie is only set
+     * by the reply to the login. Everything else needed to set up a Wiki (e.g. its namespaces) is fused into the
+     * login token query instead.
+     *
+     * @param user       The username to use
+     * @param password   The password to use
+     * @param loginToken A login token from {@code meta=tokens}. Set null to use the legacy login flow of MediaWiki
+     *                   1.19 and older.
+     * @return True if the user is now logged in.
+     */
+    private boolean login(String user, String password, String loginToken) {
+        if (loginToken == null) {
+            return legacyLogin(user, password);
+        }
+
         wikiConfiguration.getLog().info(this, "Try login for " + user);
+        try {
+            if (WAction.postAction(this, LOGIN, false, FL.produceMap("lgname", user, "lgpassword", password, LGTOKEN, loginToken))
+                    .getValue1() != WAction.ActionResult.SUCCESS) {
+                return false;
+            }
+
+            JsonObject query = new WQuery(this, WQuery.SESSIONINFO).next().getInput().getAsJsonObject("query");
+            if (!GSONP.getBoolean(query.getAsJsonObject("userinfo"), "anon")) {
+                applySessionInfo(query);
+
+                wikiConfiguration.getLog().info(this, "Logged in as " + user);
+                return true;
+            }
+        } catch (Exception e) {
+            LOG.error("Exception during login", e);
+        }
+
+        return false;
+    }
+
+    /**
+     * Performs a login with the legacy login flow, which requests a login token, an lgtoken and an edit token in turn.
+     *
+     * @param user     The username to use
+     * @param password The password to use
+     * @return True if the user is now logged in.
+     */
+    private boolean legacyLogin(String user, String password) {
+        wikiConfiguration.getLog().info(this, "Try legacy login for " + user);
         try {
 
             final String firstToken = getFirstToken(user, password);
@@ -322,19 +735,58 @@ public class Wiki {
     private String getEditToken(String secondToken) {
         final WQuery.QTemplate qTemplate = new WQuery.QTemplate(FL.produceMap("prop", "info",
                 "intoken", "edit", "titles", "Main Page", LGTOKEN, secondToken), null);
-        final JsonObject pages = new WQuery(this, qTemplate).next().metaComp("pages").getAsJsonObject();
-        return pages.entrySet().stream()
-                .map(p -> p.getValue().getAsJsonObject().get("edittoken").getAsString())
+        return GSONP.getJsonObjects(new WQuery(this, qTemplate).next().metaComp("pages")).stream()
+                .map(p -> GSONP.getString(p, "edittoken"))
                 .findAny()
                 .orElse(null);
     }
 
     /**
-     * Refresh the login status of a Wiki. This runs automatically on login or creation of a new CentralAuth'd Wiki.
+     * Refresh the login status of a Wiki. This runs automatically when logging in with the legacy login flow.
      *
      * @param editToken The edittoken obtained earlier in the login-process
      */
     public void refreshLoginStatus(String editToken) {
+        JsonObject query = new WQuery(this, WQuery.SESSIONINFO).next().getInput().getAsJsonObject("query");
+        applyUserInfo(query.getAsJsonObject("userinfo"), editToken);
+    }
+
+    public void refreshLoginStatus() {
+        refreshLoginStatus(null);
+    }
+
+    /**
+     * Applies the reply of a {@link WQuery#SESSIONINFO} query to this Wiki: sets the logged in user, their CSRF token,
+     * whether they are a bot, and the query limits they are allowed to use.
+     *
+     * @param query The {@code query} JsonObject of the reply, with {@code userinfo} and {@code tokens}.
+     */
+    private void applySessionInfo(JsonObject query) {
+        JsonObject userinfo = query.getAsJsonObject("userinfo");
+        applyUserInfo(userinfo, GSONP.getBoolean(userinfo, "anon") ? null : GSONP.getString(query.getAsJsonObject("tokens"), "csrftoken"));
+    }
+
+    /**
+     * Applies the {@code userinfo} of the logged in user to this Wiki. Accounts with the {@code apihighlimits} right
+     * (e.g. bots and sysops) have their multi-title batch size and per-request result limit raised tenfold.
+     *
+     * @param userinfo The {@code userinfo} JsonObject, with the user's {@code groups} and {@code rights}.
+     * @param token    The CSRF token of the logged in user.
+     */
+    private void applyUserInfo(JsonObject userinfo, String token) {
+        setLoginStatus(GSONP.getString(userinfo, "name"), token);
+
+        wikiConfiguration.setBot(userinfo.has("groups") && GSONP.convertJsonArrayToList(userinfo.getAsJsonArray("groups")).contains("bot"));
+        wikiConfiguration.setApiHighLimits(userinfo.has("rights") && GSONP.convertJsonArrayToList(userinfo.getAsJsonArray("rights")).contains("apihighlimits"));
+    }
+
+    /**
+     * Sets the logged in user and CSRF token of this Wiki, and registers it as a logged in Wiki.
+     *
+     * @param uname The name of the logged in user.
+     * @param token The CSRF token of the logged in user.
+     */
+    private void setLoginStatus(String uname, String token) {
         wikiConfiguration = Conf.builder()
                 .debug(wikiConfiguration.isDebug())
                 .userAgent(wikiConfiguration.getUserAgent())
@@ -343,18 +795,101 @@ public class Wiki {
                 .isBot(wikiConfiguration.isBot())
                 .hostname(wikiConfiguration.getHostname())
                 .maxResultLimit(wikiConfiguration.getMaxResultLimit())
-                .uname(GSONP.getString(new WQuery(this, WQuery.USERINFO).next().metaComp("userinfo").getAsJsonObject(), "name"))
+                .groupQueryMax(wikiConfiguration.getGroupQueryMax())
+                .apiHighLimits(wikiConfiguration.isApiHighLimits())
+                .queryParallelism(wikiConfiguration.getQueryParallelism())
+                .prefetchContinuations(wikiConfiguration.isPrefetchContinuations())
+                .retryPolicy(wikiConfiguration.getRetryPolicy())
+                .checkpointStore(wikiConfiguration.getCheckpointStore())
+                .pageTextCache(wikiConfiguration.getPageTextCache())
+                .titleCache(wikiConfiguration.getTitleCache())
+                .uname(uname)
                 .log(wikiConfiguration.getLog())
-                .token(editToken)
+                .token(token)
                 .build();
 
         wikis.put(wikiConfiguration.getHostname(), this);
+    }
+
+    /**
+     * Saves the login session of this Wiki to a file, so that it can be restored with {@link #restoreSession(Path)}
+     * (e.g. by a later run of the same program) instead of logging in again. The file contains the session cookies,
+     * CSRF token and user of this Wiki, so keep it private.
+     *
+     * @param file The file to save the session to. This is overwritten if it exists.
+     * @return True on success, or false if this Wiki is not logged in or the file could not be written.
+     */
+    public boolean saveSession(Path file) {
+        if (wikiConfiguration.getUname() == null) {
+            return false;
+        }
+
+        JsonObject session = new JsonObject();
+        session.addProperty(VAR_ENDPOINT, wikiConfiguration.getBaseURL().toString());
+        session.addProperty("uname", wikiConfiguration.getUname());
+        session.addProperty("token", wikiConfiguration.getToken());
+        session.addProperty("bot", wikiConfiguration.isBot());
+        session.add(VAR_COOKIES, GSONP.getGson().toJsonTree(apiclient.getCookies()));
+
+        try {
+            // the file holds session cookies, so it is created private and only then filled and moved into place
+            Path dir = file.toAbsolutePath().getParent();
+            Path tmp = file.getFileSystem().supportedFileAttributeViews().contains("posix")
+                    ? Files.createTempFile(dir, file.getFileName().toString(), ".tmp", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")))
+                    : Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
 
-        wikiConfiguration.setBot(listUserRights(wikiConfiguration.getUname()).contains("bot"));
+            try {
+                Files.writeString(tmp, GSONP.getGson().toJson(session), StandardCharsets.UTF_8);
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            return true;
+        } catch (Exception e) {
+            LOG.error("Could not save session to {}", file, e);
+            return false;
+        }
     }
 
-    public void refreshLoginStatus() {
-        refreshLoginStatus(null);
+    /**
+     * Restores a login session saved with {@link #saveSession(Path)}. The restored session is validated with a single
+     * request, which also refreshes the CSRF token and the user's bot flag. Does nothing if this Wiki is already logged
+     * in.
+     *
+     * @param file The file to restore the session from.
+     * @return True if this Wiki is now logged in, or false if the file could not be read, belongs to another Wiki, or
+     * its session has expired.
+     */
+    public synchronized boolean restoreSession(Path file) {
+        if (wikiConfiguration.getUname() != null) {
+            return true;
+        }
+
+        try {
+            JsonObject session = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8)).getAsJsonObject();
+            if (!wikiConfiguration.getBaseURL().toString().equals(GSONP.getString(session, VAR_ENDPOINT))) {
+                wikiConfiguration.getLog().warn(this, String.format("Session in %s belongs to another Wiki, ignoring it", file));
+                return false;
+            }
+
+            apiclient.setCookies(GSONP.getGson().fromJson(session.getAsJsonObject(VAR_COOKIES), new TypeToken<Map<String, Map<String, String>>>() {
+            }.getType()));
+
+            JsonObject query = new WQuery(this, WQuery.SESSIONINFO).next().getInput().getAsJsonObject("query");
+            if (GSONP.getBoolean(query.getAsJsonObject("userinfo"), "anon")) {
+                wikiConfiguration.getLog().info(this, String.format("Session in %s has expired", file));
+                return false;
+            }
+
+            applySessionInfo(query);
+
+            wikiConfiguration.getLog().info(this, "Restored session of " + wikiConfiguration.getUname());
+            return true;
+        } catch (Exception e) {
+            LOG.error("Could not restore session from {}", file, e);
+            return false;
+        }
     }
 
     /* //////////////////////////////////////////////////////////////////////////////// */
@@ -401,6 +936,43 @@ public class Wiki {
         }
     }
 
+    /**
+     * Performs a basic GET action on this Wiki without blocking the calling thread. Use this to implement custom or
+     * non-standard API calls which should be kept in flight concurrently. While the host is throttled, or the request
+     * waits to be retried, it occupies one of the {@code maxRequestsPerHost} slots and delays the calls queued behind
+     * it.
+     *
+     * @param action The action to perform.
+     * @param params Each parameter and its corresponding value. For example, the parameters,
+     *               {@code &amp;foo=bar&amp;baz=blah}, should be passed in as {{@code "foo", "bar", "baz", "blah"}}.
+     *               URL-encoding will be applied automatically.
+     * @return A CompletableFuture which completes with the Response from the server, or exceptionally on error. The
+     * caller is responsible for closing the Response.
+     */
+    public CompletableFuture<Response> basicGETAsync(String action, String... params) {
+        Map<String, String> pl = FL.produceMap(params);
+        pl.put("action", action);
+        pl.put("format", "json");
+
+        return apiclient.basicGETAsync(pl);
+    }
+
+    /**
+     * Performs a basic POST action on this Wiki without blocking the calling thread. Use this to implement custom or
+     * non-standard API calls which should be kept in flight concurrently. Like {@link #basicGETAsync(String, String...)},
+     * the request holds its {@code maxRequestsPerHost} slot while it is throttled or waiting to be retried.
+     *
+     * @param action The action to perform.
+     * @param form   The form data to post. This will be automatically URL-encoded.
+     * @return A CompletableFuture which completes with the Response from the server, or exceptionally on error. The
+     * caller is responsible for closing the Response.
+     */
+    public CompletableFuture<Response> basicPOSTAsync(String action, Map<String, String> form) {
+        form.put("format", "json");
+
+        return apiclient.basicPOSTAsync(FL.produceMap("action", action), form);
+    }
+
     /**
      * Check if a title in specified namespace and convert it if it is not.
      *
@@ -470,7 +1042,7 @@ public class Wiki {
         try {
             return wikis.containsKey(domain)
                     ? wikis.get(domain)
-                    : new Wiki(null, null, wikiConfiguration.getBaseURL().newBuilder().host(domain).build(), null, this, wikiConfiguration.getLog().isEnabled());
+                    : new Wiki(null, null, wikiConfiguration.getBaseURL().newBuilder().host(domain).build(), null, null, this, wikiConfiguration.getLog().isEnabled());
         } catch (Exception e) {
             LOG.error("Exception during obtaining wiki", e);
             return null;
@@ -678,6 +1250,40 @@ public class Wiki {
      * @return A list of titles on this Wiki, as specified.
      */
     public List<String> allPages(String prefix, boolean redirectsOnly, boolean protectedOnly, int cap, NS namespace) {
+        return FL.toArrayList(streamAllPages(prefix, redirectsOnly, protectedOnly, cap, namespace));
+    }
+
+    /**
+     * Lazily enumerates pages on the Wiki. Continuation queries are only made as the Stream is consumed, so memory use
+     * stays constant regardless of the number of titles. Use {@code iterator()} on the result for an Iterator.
+     *
+     * @param prefix        Only return titles starting with this prefix. DO NOT include a namespace prefix (e.g.
+     *                      {@code File:}). Optional param - set null to disable
+     * @param redirectsOnly Set true to get redirects only.
+     * @param protectedOnly Set true to get protected pages only.
+     * @param cap           The max number of titles to return. Optional param - set {@code -1} to get all pages.
+     * @param namespace     The namespace to filter by. Optional param - set null to disable
+     * @return A Stream of titles on this Wiki, as specified.
+     */
+    public Stream<String> streamAllPages(String prefix, boolean redirectsOnly, boolean protectedOnly, int cap, NS namespace) {
+        return streamAllPages(prefix, redirectsOnly, protectedOnly, cap, namespace, null);
+    }
+
+    /**
+     * Lazily enumerates pages on the Wiki, saving the progress of the enumeration to a checkpoint. If the enumeration
+     * is interrupted, then calling this again with the same arguments resumes it from where it stopped. Requires
+     * {@link Builder#withCheckpoints(Path)}.
+     *
+     * @param prefix        Only return titles starting with this prefix. DO NOT include a namespace prefix (e.g.
+     *                      {@code File:}). Optional param - set null to disable
+     * @param redirectsOnly Set true to get redirects only.
+     * @param protectedOnly Set true to get protected pages only.
+     * @param cap           The max number of titles to return. Optional param - set {@code -1} to get all pages.
+     * @param namespace     The namespace to filter by. Optional param - set null to disable
+     * @param checkpoint    The name of the checkpoint to use. Optional param - set null to disable
+     * @return A Stream of titles on this Wiki, as specified.
+     */
+    public Stream<String> streamAllPages(String prefix, boolean redirectsOnly, boolean protectedOnly, int cap, NS namespace, String checkpoint) {
         wikiConfiguration.getLog().info(this, "Doing all pages fetch for " + (prefix == null ? "all pages" : prefix));
 
         WQuery wq = new WQuery(this, cap, WQuery.ALLPAGES);
@@ -697,14 +1303,11 @@ public class Wiki {
             wq.set("apprtype", "edit|move|upload");
         }
 
-        List<String> l = new ArrayList<>();
-        while (wq.has()) {
-            l.addAll(FL.toArrayList(wq.next().listComp("allpages").stream()
-                    .map(jo -> GSONP.getString(jo, VAR_TITLE))
-            ));
+        if (checkpoint != null) {
+            wq.checkpoint(checkpoint);
         }
 
-        return l;
+        return wq.stream(r -> FL.toArrayList(r.listComp("allpages").stream().map(jo -> GSONP.getString(jo, VAR_TITLE))));
     }
 
     /**
@@ -776,6 +1379,20 @@ public class Wiki {
      * @return The list of titles, as specified, in the category.
      */
     public List<String> getCategoryMembers(String title, int cap, NS... ns) {
+        return FL.toArrayList(streamCategoryMembers(title, cap, ns));
+    }
+
+    /**
+     * Lazily enumerates a limited number of titles in a category. Continuation queries are only made as the Stream is
+     * consumed.
+     *
+     * @param title The category to query, including the "Category:" prefix.
+     * @param cap   The maximum number of elements to return. Optional param - set to 0 to disable.
+     * @param ns    Namespace filter. Any title not in the specified namespace(s) will be ignored. Leave blank to select all
+     *              namespaces. CAVEAT: skipped items are counted against {@code cap}.
+     * @return A Stream of titles, as specified, in the category.
+     */
+    public Stream<String> streamCategoryMembers(String title, int cap, NS... ns) {
         wikiConfiguration.getLog().info(this, "Getting category members from " + title);
 
         WQuery wq = new WQuery(this, cap, WQuery.CATEGORYMEMBERS).set("cmtitle", convertIfNotInNS(title, NS.CATEGORY));
@@ -783,12 +1400,7 @@ public class Wiki {
             wq.set("cmnamespace", namespaceManager.createFilter(ns));
         }
 
-        List<String> l = new ArrayList<>();
-        while (wq.has()) {
-            l.addAll(FL.toArrayList(wq.next().listComp("categorymembers").stream().map(e -> GSONP.getString(e, VAR_TITLE))));
-        }
-
-        return l;
+        return wq.stream(r -> FL.toArrayList(r.listComp("categorymembers").stream().map(e -> GSONP.getString(e, VAR_TITLE))));
     }
 
     /**
@@ -814,6 +1426,19 @@ public class Wiki {
      * @return A list of contributions.
      */
     public List<Contrib> getContribs(String user, int cap, boolean olderFirst, NS... ns) {
+        return FL.toArrayList(streamContribs(user, cap, olderFirst, ns));
+    }
+
+    /**
+     * Lazily enumerates the contributions of a user. Continuation queries are only made as the Stream is consumed.
+     *
+     * @param user       The user to get contribs for, without the "User:" prefix.
+     * @param cap        The maximum number of results to return. Optional, disable with -1.
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param ns         Restrict titles returned to the specified Namespace(s). Optional, leave blank to select all namespaces.
+     * @return A Stream of contributions.
+     */
+    public Stream<Contrib> streamContribs(String user, int cap, boolean olderFirst, NS... ns) {
         wikiConfiguration.getLog().info(this, "Fetching contribs of " + user);
 
         WQuery wq = new WQuery(this, cap, WQuery.USERCONTRIBS).set("ucuser", user);
@@ -825,14 +1450,51 @@ public class Wiki {
             wq.set("ucdir", VAR_NEWER);
         }
 
-        List<Contrib> result = new ArrayList<>();
-        while (wq.has()) {
-            result.addAll(FL.toArrayList(wq.next().listComp("usercontribs").stream()
-                    .map(jo -> GSONP.getGson().fromJson(jo, Contrib.class))
-            ));
-        }
+        return wq.stream(r -> FL.toArrayList(r.listComp("usercontribs").stream().map(jo -> GSONP.getGson().fromJson(jo, Contrib.class))));
+    }
 
-        return result;
+    /**
+     * Gets the contributions of a user in a time range, enumerating {@code partitions} slices of the range concurrently.
+     * Use this instead of {@link #getContribs(String, int, boolean, NS...)} for backfills over long periods of time.
+     *
+     * @param user       The user to get contribs for, without the {@code User:} prefix.
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @param ns         Restrict titles returned to the specified Namespace(s). Optional, leave blank to select all
+     *                   namespaces.
+     * @return A list of contributions, in the same order as {@link #getContribs(String, int, boolean, NS...)}.
+     */
+    public List<Contrib> getContribs(String user, boolean olderFirst, Instant start, Instant end, int partitions, NS... ns) {
+        return FL.toArrayList(streamContribs(user, olderFirst, start, end, partitions, ns));
+    }
+
+    /**
+     * Enumerates the contributions of a user in a time range, enumerating {@code partitions} slices of the range
+     * concurrently. See {@link #getContribs(String, boolean, Instant, Instant, int, NS...)}.
+     *
+     * @param user       The user to get contribs for, without the {@code User:} prefix.
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @param ns         Restrict titles returned to the specified Namespace(s). Optional, leave blank to select all
+     *                   namespaces.
+     * @return A Stream of contributions.
+     */
+    public Stream<Contrib> streamContribs(String user, boolean olderFirst, Instant start, Instant end, int partitions, NS... ns) {
+        wikiConfiguration.getLog().info(this, String.format("Fetching contribs of %s in %d partitions", user, partitions));
+
+        return streamPartitioned("uc", olderFirst, start, end, partitions, () -> {
+            WQuery wq = new WQuery(this, WQuery.USERCONTRIBS).set("ucuser", user);
+            if (ns.length > 0) {
+                wq.set("ucnamespace", namespaceManager.createFilter(ns));
+            }
+            return wq;
+        }, r -> FL.toArrayList(r.listComp("usercontribs").stream().map(jo -> GSONP.getGson().fromJson(jo, Contrib.class))));
     }
 
     /**
@@ -930,6 +1592,36 @@ public class Wiki {
      * @return The log entries.
      */
     public List<LogEntry> getLogs(String title, String user, String type, int cap) {
+        return FL.toArrayList(streamLogs(title, user, type, cap));
+    }
+
+    /**
+     * Lazily enumerates log events. Order is newer -&gt; older. Continuation queries are only made as the Stream is
+     * consumed.
+     *
+     * @param title The title to fetch logs for. Optional - set null to disable.
+     * @param user  The performing user to filter log entries by. Optional - set null to disable
+     * @param type  The type of log to get (e.g. delete, upload, patrol). Optional - set null to disable
+     * @param cap   Limits the number of entries returned from this log. Optional - set -1 to disable
+     * @return A Stream of log entries.
+     */
+    public Stream<LogEntry> streamLogs(String title, String user, String type, int cap) {
+        return streamLogs(title, user, type, cap, null);
+    }
+
+    /**
+     * Lazily enumerates log events, saving the progress of the enumeration to a checkpoint. If the enumeration is
+     * interrupted, then calling this again with the same arguments resumes it from where it stopped. Requires
+     * {@link Builder#withCheckpoints(Path)}.
+     *
+     * @param title      The title to fetch logs for. Optional - set null to disable.
+     * @param user       The performing user to filter log entries by. Optional - set null to disable
+     * @param type       The type of log to get (e.g. delete, upload, patrol). Optional - set null to disable
+     * @param cap        Limits the number of entries returned from this log. Optional - set -1 to disable
+     * @param checkpoint The name of the checkpoint to use. Optional - set null to disable
+     * @return A Stream of log entries.
+     */
+    public Stream<LogEntry> streamLogs(String title, String user, String type, int cap, String checkpoint) {
         wikiConfiguration.getLog().info(this, String.format("Fetching log entries -> title: %s, user: %s, type: %s", title, user, type));
 
         WQuery wq = new WQuery(this, cap, WQuery.LOGEVENTS);
@@ -945,13 +1637,62 @@ public class Wiki {
             wq.set("letype", type);
         }
 
-        List<LogEntry> result = new ArrayList<>();
-        while (wq.has()) {
-            result.addAll(FL.toArrayList(wq.next().listComp("logevents").stream()
-                    .map(jo -> GSONP.getGson().fromJson(jo, LogEntry.class))));
+        if (checkpoint != null) {
+            wq.checkpoint(checkpoint);
         }
 
-        return result;
+        return wq.stream(r -> FL.toArrayList(r.listComp("logevents").stream().map(jo -> GSONP.getGson().fromJson(jo, LogEntry.class))));
+    }
+
+    /**
+     * List log events in a time range, enumerating {@code partitions} slices of the range concurrently. Order is newer
+     * -&gt; older. Use this instead of {@link #getLogs(String, String, String, int)} for backfills over long periods of
+     * time.
+     *
+     * @param title      The title to fetch logs for. Optional - set null to disable.
+     * @param user       The performing user to filter log entries by. Optional - set null to disable
+     * @param type       The type of log to get (e.g. delete, upload, patrol). Optional - set null to disable
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return The log entries.
+     */
+    public List<LogEntry> getLogs(String title, String user, String type, Instant start, Instant end, int partitions) {
+        return FL.toArrayList(streamLogs(title, user, type, start, end, partitions));
+    }
+
+    /**
+     * Enumerates log events in a time range, enumerating {@code partitions} slices of the range concurrently. Order is
+     * newer -&gt; older. See {@link #getLogs(String, String, String, Instant, Instant, int)}.
+     *
+     * @param title      The title to fetch logs for. Optional - set null to disable.
+     * @param user       The performing user to filter log entries by. Optional - set null to disable
+     * @param type       The type of log to get (e.g. delete, upload, patrol). Optional - set null to disable
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return A Stream of log entries.
+     */
+    public Stream<LogEntry> streamLogs(String title, String user, String type, Instant start, Instant end, int partitions) {
+        wikiConfiguration.getLog().info(this, String.format("Fetching log entries -> title: %s, user: %s, type: %s in %d partitions", title, user, type, partitions));
+
+        return streamPartitioned("le", false, start, end, partitions, () -> {
+            WQuery wq = new WQuery(this, WQuery.LOGEVENTS);
+            if (title != null) {
+                wq.set("letitle", title);
+            }
+
+            if (user != null) {
+                wq.set("leuser", nss(user));
+            }
+
+            if (type != null) {
+                wq.set("letype", type);
+            }
+            return wq;
+        }, r -> FL.toArrayList(r.listComp("logevents").stream().map(jo -> GSONP.getGson().fromJson(jo, LogEntry.class))));
     }
 
     /**
@@ -1052,6 +1793,20 @@ public class Wiki {
      * @return A list Recent Changes where return order is newer -&gt; Older
      */
     public List<RecentChangesEntry> getRecentChanges(Instant start, Instant end) {
+        return FL.toArrayList(streamRecentChanges(start, end));
+    }
+
+    /**
+     * Lazily enumerates Recent Changes in between two timestamps. Continuation queries are only made as the Stream is
+     * consumed. See {@link #getRecentChanges(Instant, Instant)} for the semantics of {@code start} and {@code end}.
+     *
+     * @param start The Instant to start enumerating from. Can be used without {@code end}. Optional param - set null to
+     *              disable.
+     * @param end   The Instant to stop enumerating at. {@code start} must be set, otherwise this will be ignored. Optional
+     *              param - set null to disable.
+     * @return A Stream of Recent Changes where order is newer -&gt; Older
+     */
+    public Stream<RecentChangesEntry> streamRecentChanges(Instant start, Instant end) {
         wikiConfiguration.getLog().info(this, "Querying recent changes");
 
         Instant startInstance = start;
@@ -1070,12 +1825,38 @@ public class Wiki {
             wq.set("rcstart", endInstance.toString());
         }
 
-        List<RecentChangesEntry> result = new ArrayList<>();
-        while (wq.has()) {
-            result.addAll(FL.toArrayList(wq.next().listComp("recentchanges").stream().map(jo -> GSONP.getGson().fromJson(jo, RecentChangesEntry.class))));
-        }
+        return wq.stream(r -> FL.toArrayList(r.listComp("recentchanges").stream().map(jo -> GSONP.getGson().fromJson(jo, RecentChangesEntry.class))));
+    }
 
-        return result;
+    /**
+     * Gets the recent changes in a time range, enumerating {@code partitions} slices of the range concurrently. Order
+     * is newer -&gt; older.
+     *
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return A list of recent changes.
+     */
+    public List<RecentChangesEntry> getRecentChanges(Instant start, Instant end, int partitions) {
+        return FL.toArrayList(streamRecentChanges(start, end, partitions));
+    }
+
+    /**
+     * Enumerates the recent changes in a time range, enumerating {@code partitions} slices of the range concurrently.
+     * Order is newer -&gt; older.
+     *
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return A Stream of recent changes.
+     */
+    public Stream<RecentChangesEntry> streamRecentChanges(Instant start, Instant end, int partitions) {
+        wikiConfiguration.getLog().info(this, String.format("Querying recent changes in %d partitions", partitions));
+
+        return streamPartitioned("rc", false, start, end, partitions, () -> new WQuery(this, WQuery.RECENTCHANGES),
+                r -> FL.toArrayList(r.listComp("recentchanges").stream().map(jo -> GSONP.getGson().fromJson(jo, RecentChangesEntry.class))));
     }
 
     /**
@@ -1090,6 +1871,21 @@ public class Wiki {
      * @return A list of page revisions
      */
     public List<Revision> getRevisions(String title, int cap, boolean olderFirst, Instant start, Instant end) {
+        return FL.toArrayList(streamRevisions(title, cap, olderFirst, start, end));
+    }
+
+    /**
+     * Lazily enumerates the revisions of a page. Continuation queries are only made as the Stream is consumed.
+     *
+     * @param title      The title to query
+     * @param cap        The maximum number of results to return. Optional param: set to any number zero or less to disable.
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param start      The instant to start enumerating from. Start date must occur before end date. Optional param - set
+     *                   null to disable.
+     * @param end        The instant to stop enumerating at. Optional param - set null to disable.
+     * @return A Stream of page revisions
+     */
+    public Stream<Revision> streamRevisions(String title, int cap, boolean olderFirst, Instant start, Instant end) {
         wikiConfiguration.getLog().info(this, "Getting revisions from " + title);
 
         WQuery wq = new WQuery(this, cap, WQuery.REVISIONS).set("titles", title);
@@ -1102,15 +1898,110 @@ public class Wiki {
             wq.set("rvend", start.toString());
         }
 
-        List<Revision> result = new ArrayList<>();
-        while (wq.has()) {
-            JsonElement e = wq.next().propComp(VAR_TITLE, "revisions").get(title);
-            if (e != null) {
-                result.addAll(FL.toArrayList(GSONP.getJsonArrayofJsonObject(e.getAsJsonArray()).stream()
-                        .map(jo -> GSONP.getGson().fromJson(jo, Revision.class))));
-            }
+        return wq.stream(r -> revisionsOf(r, title));
+    }
+
+    /**
+     * Gets the revisions of a page in a time range, enumerating {@code partitions} slices of the range concurrently.
+     * Use this instead of {@link #getRevisions(String, int, boolean, Instant, Instant)} for pages with a long history.
+     *
+     * @param title      The title to query
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return A list of page revisions
+     */
+    public List<Revision> getRevisions(String title, boolean olderFirst, Instant start, Instant end, int partitions) {
+        return FL.toArrayList(streamRevisions(title, olderFirst, start, end, partitions));
+    }
+
+    /**
+     * Enumerates the revisions of a page in a time range, enumerating {@code partitions} slices of the range
+     * concurrently. See {@link #getRevisions(String, boolean, Instant, Instant, int)}.
+     *
+     * @param title      The title to query
+     * @param olderFirst Set to true to enumerate from older → newer revisions
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into. Up to
+     *                   {@link Conf#PARTITION_PARALLELISM} slices are queried at the same time.
+     * @return A Stream of page revisions
+     */
+    public Stream<Revision> streamRevisions(String title, boolean olderFirst, Instant start, Instant end, int partitions) {
+        wikiConfiguration.getLog().info(this, String.format("Getting revisions from %s in %d partitions", title, partitions));
+
+        return streamPartitioned("rv", olderFirst, start, end, partitions, () -> new WQuery(this, WQuery.REVISIONS).set("titles", title),
+                r -> revisionsOf(r, title));
+    }
+
+    /**
+     * Extracts the revisions of a page from a QReply.
+     *
+     * @param r     The QReply to extract revisions from
+     * @param title The title of the page
+     * @return The revisions of {@code title} in {@code r}.
+     */
+    private static List<Revision> revisionsOf(WQuery.QReply r, String title) {
+        JsonElement e = r.propComp(VAR_TITLE, "revisions").get(title);
+        return e == null
+                ? Collections.emptyList()
+                : FL.toArrayList(GSONP.getJsonArrayofJsonObject(e.getAsJsonArray()).stream().map(jo -> GSONP.getGson().fromJson(jo, Revision.class)));
+    }
+
+    /**
+     * Enumerates a time range in {@code partitions} slices of whole seconds, which are queried concurrently on the
+     * Wiki's partition executor. The slices do not overlap, so their results are merged back into a single sequence by
+     * concatenating them in the requested order. Slices are fetched lazily: at most
+     * {@link Conf#PARTITION_PARALLELISM} slices are queried or held in memory at once, so use more partitions for
+     * longer time ranges.
+     *
+     * @param <T>        The type of item in the resulting Stream
+     * @param prefix     The prefix of the {@code start}, {@code end} and {@code dir} parameters of the list module, e.g.
+     *                   {@code le} for {@code lestart}.
+     * @param olderFirst Set true to enumerate from older to newer items.
+     * @param start      The start of the time range
+     * @param end        The end of the time range
+     * @param partitions The number of slices to split the time range into.
+     * @param query      Creates a new WQuery for each slice.
+     * @param extractor  Extracts the items of interest from each QReply.
+     * @return A Stream of the items in the time range, in the requested order.
+     */
+    private <T> Stream<T> streamPartitioned(String prefix, boolean olderFirst, Instant start, Instant end, int partitions,
+                                            Supplier<WQuery> query, Function<WQuery.QReply, List<T>> extractor) {
+        if (start == null || end == null || end.isBefore(start)) {
+            throw new IllegalArgumentException("start and end must be set, and start must not be after end");
         }
-        return result;
+
+        Instant from = start.truncatedTo(ChronoUnit.SECONDS);
+        long seconds = Duration.between(from, end).getSeconds() + 1;
+        int n = (int) Math.max(1, Math.min(partitions, seconds));
+
+        // slices are disjoint at second resolution, since MediaWiki treats both ends of a range as inclusive
+        List<Tuple<Instant, Instant>> slices = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            slices.add(new Tuple<>(from.plusSeconds(seconds * i / n), from.plusSeconds(seconds * (i + 1) / n - 1)));
+        }
+
+        if (!olderFirst) {
+            Collections.reverse(slices);
+        }
+
+        List<Supplier<List<T>>> tasks = FL.toArrayList(slices.stream().map(slice -> () -> {
+            WQuery wq = query.get();
+            if (olderFirst) {
+                wq.set(prefix + "dir", VAR_NEWER).set(prefix + "start", slice.getValue1().toString()).set(prefix + "end", slice.getValue2().toString());
+            } else {
+                // MediaWiki has start <-> end reversed
+                wq.set(prefix + "start", slice.getValue2().toString()).set(prefix + "end", slice.getValue1().toString());
+            }
+            return FL.toArrayList(wq.stream(extractor));
+        }));
+
+        SliceSpliterator<T> spliterator = new SliceSpliterator<>(tasks, wikiConfiguration.getPartitionExecutor(),
+                Math.min(n, Conf.PARTITION_PARALLELISM));
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::cancel);
     }
 
     /**
@@ -1220,8 +2111,9 @@ public class Wiki {
         List<String> result = new ArrayList<>();
 
         while (wq.has()) {
+            JsonObject reply = wq.next().getInput();
             try {
-                result.addAll(FL.toArrayList(FL.streamFrom(GSONP.getNestedJsonArray(wq.next().getInput(), FL.toStringArrayList("query", "querypage", "results")))
+                result.addAll(FL.toArrayList(FL.streamFrom(GSONP.getNestedJsonArray(reply, FL.toStringArrayList("query", "querypage", "results")))
                         .map(e -> GSONP.getString(e.getAsJsonObject(), VAR_TITLE))));
             } catch (Exception e) {
                 LOG.error("Exception during obtaining special page", e);
@@ -1277,7 +2169,7 @@ public class Wiki {
 
         try {
             return PageSection.pageBySection(GSONP.getJsonArrayofJsonObject(GSONP.getNestedJsonArray(
-                    JsonParser.parseString(basicGET("parse", "prop", "sections", "page", title).body().string()).getAsJsonObject(),
+                    GSONP.parseResponseBody(basicGET("parse", "prop", "sections", "page", title).body(), List.of("parse")),
                     FL.toStringArrayList("parse", "sections"))), getPageText(title));
         } catch (Exception e) {
             LOG.error("Exception during obtaining page sections", e);
@@ -1321,4 +2213,91 @@ public class Wiki {
         wikiConfiguration.getLog().info(this, "Getting list of pages that transclude " + title);
         return MQuery.transcludesIn(this, FL.toStringArrayList(title), ns).get(title);
     }
+
+    /**
+     * A Spliterator which concatenates the results of the slices of a partitioned enumeration. Slices are submitted to
+     * an executor as the previous ones are consumed, so that no more than {@code window} of them are fetched or held in
+     * memory at once.
+     *
+     * @param <T> The type of item produced by this SliceSpliterator
+     * @author Fastily
+     */
+    private static class SliceSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        /**
+         * The slices which have not been submitted yet, in the order their results should be returned.
+         */
+        private Iterator<Supplier<List<T>>> tasks;
+
+        /**
+         * Runs the slices.
+         */
+        private final ExecutorService pool;
+
+        /**
+         * The maximum number of slices which may be submitted but not consumed.
+         */
+        private final int window;
+
+        /**
+         * The slices which have been submitted but not consumed yet, in order.
+         */
+        private final Deque<CompletableFuture<List<T>>> inFlight = new ArrayDeque<>();
+
+        /**
+         * The items of the slice being consumed which have not been returned yet.
+         */
+        private Iterator<T> buffer = Collections.emptyIterator();
+
+        /**
+         * Constructor, creates a new SliceSpliterator
+         *
+         * @param tasks  Fetches each slice, in the order their results should be returned.
+         * @param pool   Runs the slices.
+         * @param window The maximum number of slices which may be submitted but not consumed.
+         */
+        private SliceSpliterator(List<Supplier<List<T>>> tasks, ExecutorService pool, int window) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.tasks = tasks.iterator();
+            this.pool = pool;
+            this.window = window;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            while (!buffer.hasNext()) {
+                fill();
+                if (inFlight.isEmpty()) {
+                    return false;
+                }
+
+                try {
+                    buffer = inFlight.poll().join().iterator();
+                } catch (CompletionException e) {
+                    cancel();
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+                }
+            }
+
+            action.accept(buffer.next());
+            return true;
+        }
+
+        /**
+         * Submits slices until {@code window} of them are in flight or none are left.
+         */
+        private void fill() {
+            while (inFlight.size() < window && tasks.hasNext()) {
+                inFlight.add(CompletableFuture.supplyAsync(tasks.next(), pool));
+            }
+        }
+
+        /**
+         * Cancels the slices which have not been consumed yet, and drops those which have not been submitted.
+         */
+        private void cancel() {
+            inFlight.forEach(f -> f.cancel(true));
+            inFlight.clear();
+            tasks = Collections.emptyIterator();
+        }
+    }
 }
\ No newline at end of file
@@ -13,9 +13,9 @@ import java.util.Objects;
 @Getter
 public class Revision extends DataEntry {
     /**
-     * The text of this revision
+     * The text of this revision. This is stored under {@code content} in {@code formatversion=2}.
      */
-    @SerializedName("*")
+    @SerializedName(value = "*", alternate = "content")
     private String text;
 
     /**
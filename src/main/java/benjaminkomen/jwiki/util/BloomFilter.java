@@ -0,0 +1,116 @@
+package benjaminkomen.jwiki.util;
+
+/**
+ * A compact, probabilistic set of Strings. A BloomFilter never forgets a String which was added to it, but may claim
+ * to contain a String which was not added, with a probability chosen when it is created. It uses a fixed amount of
+ * memory, regardless of how many Strings are added. Thread-safe.
+ *
+ * @author Fastily
+ */
+public final class BloomFilter {
+
+    /**
+     * The bits of this BloomFilter.
+     */
+    private final long[] bits;
+
+    /**
+     * The number of bits in this BloomFilter.
+     */
+    private final long bitCount;
+
+    /**
+     * The number of bits set for each String.
+     */
+    private final int hashCount;
+
+    /**
+     * Constructor, creates a new, empty BloomFilter sized for the expected number of Strings.
+     *
+     * @param expectedInsertions The number of Strings which are expected to be added. Adding more raises the false
+     *                           positive probability beyond {@code fpp}.
+     * @param fpp                The desired probability that {@link #mightContain(String)} returns true for a String
+     *                           which was not added. Must be between 0 and 1, exclusive.
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException(String.format("Invalid BloomFilter size: %d insertions at fpp %f", expectedInsertions, fpp));
+        }
+
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        bits = new long[(int) Math.min(Integer.MAX_VALUE - 8L, (m + 63) / 64)];
+        bitCount = 64L * bits.length;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a String to this BloomFilter.
+     *
+     * @param s The String to add
+     */
+    public synchronized void put(String s) {
+        long h1 = hash(s);
+        long h2 = mix(h1) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Determines whether a String might have been added to this BloomFilter.
+     *
+     * @param s The String to check
+     * @return False if {@code s} was definitely not added. True if it probably was.
+     */
+    public synchronized boolean mightContain(String s) {
+        long h1 = hash(s);
+        long h2 = mix(h1) | 1;
+
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets the amount of memory used by the bits of this BloomFilter.
+     *
+     * @return The size of this BloomFilter, in bytes.
+     */
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+
+    /**
+     * Computes the 64-bit FNV-1a hash of a String.
+     *
+     * @param s The String to hash
+     * @return The hash of {@code s}.
+     */
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+
+        return mix(h);
+    }
+
+    /**
+     * Scrambles the bits of a hash, so that similar inputs produce very different outputs.
+     *
+     * @param h The hash to scramble
+     * @return The scrambled hash
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
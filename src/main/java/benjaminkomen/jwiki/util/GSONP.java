@@ -1,11 +1,16 @@
 package benjaminkomen.jwiki.util;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
 import okhttp3.HttpUrl;
+import okhttp3.ResponseBody;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -54,6 +59,37 @@ public class GSONP {
         return GSON;
     }
 
+    /**
+     * Decodes a JsonObject directly from the byte stream of a ResponseBody, without first copying the body into a
+     * String. Top-level values whose key is not in {@code keys} are skipped by the reader and never turned into a
+     * JsonElement tree.
+     *
+     * @param body The ResponseBody to decode. This will be closed.
+     * @param keys The top-level keys to keep. Optional, set null to keep all of them.
+     * @return A JsonObject with the selected top-level values of {@code body}.
+     * @throws IOException If {@code body} could not be read or is not a JsonObject.
+     */
+    public static JsonObject parseResponseBody(ResponseBody body, Collection<String> keys) throws IOException {
+        try (body; JsonReader reader = new JsonReader(body.charStream())) {
+            JsonObject result = new JsonObject();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (keys == null || keys.contains(name)) {
+                    result.add(name, JsonParser.parseReader(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return result;
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Response body is not a valid JSON object", e);
+        }
+    }
+
     /**
      * Convert a JsonObject of JsonObject to an ArrayList of JsonObject.
      *
@@ -64,6 +100,25 @@ public class GSONP {
         return FL.toArrayList(input.entrySet().stream().map(e -> e.getValue().getAsJsonObject()));
     }
 
+    /**
+     * Collects the JsonObject values of a JsonElement which may be either a JsonArray or a JsonObject. MediaWiki returns
+     * collections such as {@code pages} and {@code namespaces} as JsonObject keyed by id in {@code formatversion=1}, and
+     * as a JsonArray in {@code formatversion=2}, which also preserves the order of the elements.
+     *
+     * @param input A JsonArray of JsonObject or a JsonObject containing only other JsonObject objects. Optional, may be
+     *              null.
+     * @return An ArrayList of JsonObject derived from {@code input}, or an empty ArrayList if {@code input} is null.
+     */
+    public static List<JsonObject> getJsonObjects(JsonElement input) {
+        if (input == null || input.isJsonNull()) {
+            return new ArrayList<>();
+        }
+
+        return input.isJsonArray()
+                ? getJsonArrayofJsonObject(input.getAsJsonArray())
+                : convertJsonObjectToList(input.getAsJsonObject());
+    }
+
     /**
      * Convert a JsonArray of JsonObject to an ArrayList of JsonObject.
      *
@@ -188,6 +243,52 @@ public class GSONP {
                 : null;
     }
 
+    /**
+     * Get the content String of a JsonObject in either {@code formatversion}. In {@code formatversion=1}, MediaWiki
+     * stores content under the {@code *} key, either directly or in a nested JsonObject. In {@code formatversion=2},
+     * content is stored under a descriptive key such as {@code content}, {@code name} or {@code url}.
+     *
+     * @param inputJsonObject The JsonObject to look for the content in
+     * @param key             The key of the content in {@code formatversion=2}
+     * @return The content String, or null if it could not be found.
+     */
+    public static String getContent(JsonObject inputJsonObject, String key) {
+        JsonElement e = inputJsonObject.has("*") ? inputJsonObject.get("*") : inputJsonObject.get(key);
+        if (e != null && e.isJsonObject()) {
+            e = e.getAsJsonObject().get("*");
+        }
+
+        return e != null && e.isJsonPrimitive()
+                ? e.getAsString()
+                : null;
+    }
+
+    /**
+     * Get a boolean from a JsonObject in either {@code formatversion}. In {@code formatversion=1}, MediaWiki marks true
+     * values with an empty String and omits false ones. In {@code formatversion=2}, booleans are JSON booleans.
+     *
+     * @param inputJsonObject The JsonObject to look for {@code key} in
+     * @param key             The key to look for
+     * @return The value associated with {@code key}, or false if {@code key} could not be found.
+     */
+    public static boolean getBoolean(JsonObject inputJsonObject, String key) {
+        return isTrue(inputJsonObject.get(key));
+    }
+
+    /**
+     * Interprets a JsonElement as a boolean in either {@code formatversion}. See {@link #getBoolean(JsonObject, String)}.
+     *
+     * @param e The JsonElement to interpret. Optional, may be null.
+     * @return False if {@code e} is null, JSON null or JSON false, and true otherwise.
+     */
+    public static boolean isTrue(JsonElement e) {
+        if (e == null || e.isJsonNull()) {
+            return false;
+        }
+
+        return !e.isJsonPrimitive() || !e.getAsJsonPrimitive().isBoolean() || e.getAsBoolean();
+    }
+
     /**
      * Get a JsonArray of String objects as a List of String objects.
      *
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.ToIntFunction;
 
 /**
  * A simple read-only Queue that allows multiple items to be polled at once.
@@ -18,13 +19,22 @@ public class GroupQueue<T> {
     private List<T> backingList;
 
     /**
-     * The size, start, end, and maximum size of polls.
+     * The size, start, and maximum size of polls.
      */
     private int size;
     private int start = 0;
-    private int end;
     private int maxPoll;
 
+    /**
+     * Determines the weight of each element. Optional, null if polls are only limited by {@code maxPoll}.
+     */
+    private ToIntFunction<T> weigher;
+
+    /**
+     * The maximum total weight of the elements in a single poll.
+     */
+    private int maxWeight;
+
     /**
      * Constructor, creates a new GroupQueue.
      *
@@ -36,11 +46,27 @@ public class GroupQueue<T> {
                 ? (ArrayList<T>) backingList
                 : new ArrayList<>(backingList);
         size = backingList.size();
-        end = maxPoll;
 
         this.maxPoll = maxPoll;
     }
 
+    /**
+     * Constructor, creates a new GroupQueue whose polls are limited by both the number and the total weight of their
+     * elements. Useful to keep groups of Strings under a size limit, e.g. the length of a url.
+     *
+     * @param backingList The backing ArrayList to use. This will not be modified.
+     * @param maxPoll     The maximum number of elements to poll at once.
+     * @param weigher     Determines the weight of each element.
+     * @param maxWeight   The maximum total weight of the elements polled at once. A single element which is heavier
+     *                    than this is polled on its own.
+     */
+    public GroupQueue(Collection<T> backingList, int maxPoll, ToIntFunction<T> weigher, int maxWeight) {
+        this(backingList, maxPoll);
+
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
     /**
      * Polls this Queue and returns &le; {@code maxPoll} elements.
      *
@@ -52,14 +78,20 @@ public class GroupQueue<T> {
             return Collections.emptyList();
         }
 
-        if (size - start < maxPoll) {
-            end = size;
+        int end = Math.min(size, start + maxPoll);
+        if (weigher != null) {
+            int weight = 0;
+            for (int i = start; i < end; i++) {
+                weight += weigher.applyAsInt(backingList.get(i));
+                if (weight > maxWeight && i > start) {
+                    end = i;
+                    break;
+                }
+            }
         }
 
         List<T> temp = backingList.subList(start, end);
-
-        start += maxPoll;
-        end += maxPoll;
+        start = end;
 
         return temp;
     }
@@ -72,4 +104,4 @@ public class GroupQueue<T> {
     public boolean has() {
         return start < size;
     }
-}
\ No newline at end of file
+}
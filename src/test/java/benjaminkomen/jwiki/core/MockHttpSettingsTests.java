@@ -0,0 +1,59 @@
+package benjaminkomen.jwiki.core;
+
+import benjaminkomen.jwiki.test.BaseMockTemplate;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that the HTTP settings of a Wiki's Builder are applied to its OkHttpClient. Lives in the core package because
+ * the OkHttpClient is not exposed publicly.
+ *
+ * @author Fastily
+ */
+public class MockHttpSettingsTests extends BaseMockTemplate {
+    /**
+     * Tests that the defaults are used when no HTTP settings are configured.
+     */
+    @Test
+    public void testDefaults() {
+        OkHttpClient client = wiki.getApiclient().getClient();
+
+        assertEquals(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1), client.protocols());
+        assertEquals(64, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(64, client.dispatcher().getMaxRequests());
+        assertEquals(Duration.ofSeconds(10).toMillis(), client.connectTimeoutMillis());
+        assertEquals(Duration.ofMinutes(2).toMillis(), client.readTimeoutMillis());
+    }
+
+    /**
+     * Tests that configured HTTP settings replace the defaults.
+     */
+    @Test
+    public void testConfigured() {
+        addResponse("mockNSInfo");
+        Wiki configured = new Wiki.Builder()
+                .withApiEndpoint(server.url("/w/api.php"))
+                .withHttp2(false)
+                .withMaxRequestsPerHost(3)
+                .withConnectionPool(2, Duration.ofSeconds(30))
+                .withTimeouts(Duration.ofSeconds(3), Duration.ofSeconds(4))
+                .build();
+        OkHttpClient client = configured.getApiclient().getClient();
+
+        assertEquals(List.of(Protocol.HTTP_1_1), client.protocols());
+        assertEquals(3, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(64, client.dispatcher().getMaxRequests());
+        assertEquals(3000, client.connectTimeoutMillis());
+        assertEquals(4000, client.readTimeoutMillis());
+
+        addResponse("mockNSInfo");
+        configured = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withMaxRequestsPerHost(100).build();
+        assertEquals(100, configured.getApiclient().getClient().dispatcher().getMaxRequests());
+    }
+}
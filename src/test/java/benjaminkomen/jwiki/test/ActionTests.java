@@ -1,9 +1,13 @@
 package benjaminkomen.jwiki.test;
 
 import benjaminkomen.jwiki.core.NS;
+import benjaminkomen.jwiki.core.RetryPolicy;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.SocketPolicy;
 import org.junit.jupiter.api.Test;
 
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,6 +45,32 @@ public class ActionTests extends BaseMockTemplate {
         assertTrue(wiki.edit("Wikipedia:Sandbox", "Hello, World!", "This is a test"));
     }
 
+    /**
+     * Tests that edits which were rate limited are retried.
+     */
+    @Test
+    public void testEditRateLimited() {
+        wiki.getWikiConfiguration().setRetryPolicy(RetryPolicy.builder().initialDelay(Duration.ZERO).build());
+
+        addResponse("mockRateLimitedEdit");
+        addResponse("mockSuccessEdit");
+        assertTrue(wiki.edit("Wikipedia:Sandbox", "Hello, World!", "This is a test"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    /**
+     * Tests that an edit whose connection dropped after it was sent is not retried, since it may have been saved.
+     */
+    @Test
+    public void testEditNotRetriedAfterSending() {
+        wiki.getWikiConfiguration().setRetryPolicy(RetryPolicy.builder().initialDelay(Duration.ZERO).build());
+
+        server.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST));
+        addResponse("mockSuccessEdit");
+        assertFalse(wiki.edit("Wikipedia:Sandbox", "Hello, World!", "This is a test"));
+        assertEquals(2, server.getRequestCount());
+    }
+
     /**
      * Tests prepending and appending text via edit.
      */
@@ -1,7 +1,6 @@
 package benjaminkomen.jwiki.test;
 
 import benjaminkomen.jwiki.core.Wiki;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -12,19 +11,14 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  *
  * @author Fastily
  */
-// TODO disabled because the login method is changed. The login method in benjaminkomen/jwiki/core/Wiki.java:184 should be supported, by adding some mocks for the token dance.
-@Disabled
 public class AuthActionTests extends BaseMockTemplate {
     /**
      * Initializes a logged-in Wiki.
      */
     protected void initWiki() {
-        addResponse("mockTokenNotLoggedIn");
+        addResponse("mockSiteInfoLoginToken");
         addResponse("mockLoginSuccess");
-        addResponse("mockUserInfo");
-        addResponse("mockTokenLoggedIn");
-        addResponse("mockListSingleUserRights");
-        addResponse("mockNSInfo");
+        addResponse("mockSessionInfo");
 
         wiki = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withLogin("Test", "password").build();
     }
@@ -37,6 +31,26 @@ public class AuthActionTests extends BaseMockTemplate {
         assertEquals("Test", wiki.whoami());
     }
 
+    /**
+     * Verify that logging in fetches the namespaces together with the login token, and needs three requests in total.
+     */
+    @Test
+    public void testBootstrapRequests() throws InterruptedException {
+        assertEquals(3, server.getRequestCount());
+        assertEquals("siteinfo|tokens", server.takeRequest().getRequestUrl().queryParameter("meta"));
+        assertTrue(wiki.getWikiConfiguration().isBot());
+    }
+
+    /**
+     * Verify that accounts with {@code apihighlimits} use the raised query limits.
+     */
+    @Test
+    public void testApiHighLimits() {
+        assertTrue(wiki.getWikiConfiguration().isApiHighLimits());
+        assertEquals(5000, wiki.getWikiConfiguration().getMaxResultLimit());
+        assertEquals(500, wiki.getWikiConfiguration().getGroupQueryMax());
+    }
+
     /**
      * Test privileged delete.
      */
@@ -1,8 +1,13 @@
 package benjaminkomen.jwiki.test;
 
 import benjaminkomen.jwiki.core.Wiki;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.slf4j.Logger;
@@ -11,6 +16,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Template for mock tests.
@@ -67,15 +75,84 @@ public class BaseMockTemplate {
      * @param fileName The text file, without a {@code .txt} extension, to load a response from.
      */
     protected void addResponse(String fileName) {
+        server.enqueue(new MockResponse().setBody(readResponse(fileName)));
+    }
+
+    /**
+     * Reads a mock response.
+     *
+     * @param fileName The text file, without a {@code .json} extension, to read.
+     * @return The contents of the file
+     */
+    protected String readResponse(String fileName) {
         try {
-            server.enqueue(new MockResponse()
-                    .setBody(String.join("\n", Files.readAllLines(Paths.get(getClass().getResource(fileName + ".json").toURI())))));
+            return String.join("\n", Files.readAllLines(Paths.get(BaseMockTemplate.class.getResource(fileName + ".json").toURI())));
         } catch (Exception e) {
             LOG.error("Error reading mock json file", e);
             throw new IllegalStateException("Should *never* reach here. Is a mock configuration file missing?");
         }
     }
 
+    /**
+     * Answers every request to {@code server} with a response which depends on the request, instead of the queue
+     * filled by {@link #addResponse(String)}.
+     *
+     * @param responder Creates the response to each request.
+     */
+    protected void dispatch(Function<RecordedRequest, MockResponse> responder) {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return responder.apply(request);
+            }
+        });
+    }
+
+    /**
+     * Creates a query response with a single element, i.e. {@code {"query": {key: value}}}.
+     *
+     * @param key   The key of the element
+     * @param value The element
+     * @return The MockResponse
+     */
+    protected static MockResponse queryResponse(String key, JsonElement value) {
+        JsonObject query = new JsonObject();
+        query.add(key, value);
+        JsonObject result = new JsonObject();
+        result.add("query", query);
+        return new MockResponse().setBody(result.toString());
+    }
+
+    /**
+     * Creates a query response with an existing page for each title, in {@code formatversion=2} form.
+     *
+     * @param titles The titles of the pages
+     * @return The MockResponse
+     */
+    protected static MockResponse pagesResponse(Collection<String> titles) {
+        return pagesResponse(titles, (title, page) -> {
+        });
+    }
+
+    /**
+     * Creates a query response with a page for each title, in {@code formatversion=2} form.
+     *
+     * @param titles The titles of the pages
+     * @param props  Adds the properties of each page to its JsonObject, given its title.
+     * @return The MockResponse
+     */
+    protected static MockResponse pagesResponse(Collection<String> titles, BiConsumer<String, JsonObject> props) {
+        JsonArray pages = new JsonArray();
+        for (String title : titles) {
+            JsonObject page = new JsonObject();
+            page.addProperty("title", title);
+            props.accept(title, page);
+            pages.add(page);
+        }
+
+        return queryResponse("pages", pages);
+    }
+
     /**
      * Initializes the mock Wiki object. Runs with {@code setUp()}; override this to customize {@code wiki}'s
      * initialization behavior.
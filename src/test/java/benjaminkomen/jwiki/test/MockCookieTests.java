@@ -0,0 +1,94 @@
+package benjaminkomen.jwiki.test;
+
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the cookie store shared by all requests of a Wiki.
+ *
+ * @author Fastily
+ */
+public class MockCookieTests extends BaseMockTemplate {
+    /**
+     * Tests that replaced cookies are sent with their new value, and that cookies which the server expired are no longer
+     * sent.
+     */
+    @Test
+    public void testReplaceAndExpire() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}").addHeader("Set-Cookie", "session=abc; Path=/").addHeader("Set-Cookie", "token=1; Path=/"));
+        server.enqueue(new MockResponse().setBody("{}").addHeader("Set-Cookie", "session=def; Path=/").addHeader("Set-Cookie", "token=; Max-Age=0; Path=/"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{}").addHeader("Set-Cookie", "short=1; Max-Age=1; Path=/"));
+        server.enqueue(new MockResponse().setBody("{}"));
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        for (int i = 0; i < 4; i++) {
+            wiki.basicGET("query").close();
+        }
+
+        server.takeRequest(); // setUp
+        assertNull(server.takeRequest().getHeader("Cookie"));
+        assertEquals(Set.of("session=abc", "token=1"), cookiesOf(server.takeRequest()));
+        assertEquals(Set.of("session=def"), cookiesOf(server.takeRequest()));
+        assertEquals(Set.of("session=def"), cookiesOf(server.takeRequest()));
+
+        wiki.basicGET("query").close();
+        assertEquals(Set.of("session=def", "short=1"), cookiesOf(server.takeRequest()));
+
+        Thread.sleep(1100);
+        wiki.basicGET("query").close();
+        assertEquals(Set.of("session=def"), cookiesOf(server.takeRequest()));
+    }
+
+    /**
+     * Tests that cookies received by concurrent requests are all kept.
+     */
+    @Test
+    public void testConcurrentResponses() throws Exception {
+        dispatch(request -> new MockResponse().setBody("{}")
+                .addHeader("Set-Cookie", request.getRequestUrl().queryParameter("n") + "=1; Path=/"));
+
+        List<CompletableFuture<Response>> responses = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            responses.add(wiki.basicGETAsync("query", "n", "c" + i));
+        }
+        for (CompletableFuture<Response> r : responses) {
+            r.get(5, TimeUnit.SECONDS).close();
+        }
+
+        wiki.basicGET("query", "n", "last").close();
+
+        RecordedRequest last = null;
+        for (int i = 0; i < 22; i++) {
+            last = server.takeRequest(2, TimeUnit.SECONDS);
+            if ("last".equals(last.getRequestUrl().queryParameter("n"))) {
+                break;
+            }
+        }
+
+        Set<String> cookies = cookiesOf(last);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cookies.contains("c" + i + "=1"), "Missing cookie c" + i);
+        }
+    }
+
+    /**
+     * Splits the {@code Cookie} header of a request.
+     *
+     * @param request The request
+     * @return Each cookie sent with {@code request}, in the form {@code name=value}.
+     */
+    private static Set<String> cookiesOf(RecordedRequest request) {
+        return Set.of(request.getHeader("Cookie").split("; "));
+    }
+}
@@ -1,15 +1,47 @@
 package benjaminkomen.jwiki.test;
 
+import benjaminkomen.jwiki.core.Conf;
+import benjaminkomen.jwiki.core.ExistenceOracle;
+import benjaminkomen.jwiki.core.MQuery;
 import benjaminkomen.jwiki.core.NS;
+import benjaminkomen.jwiki.core.RecentChangesPoller;
+import benjaminkomen.jwiki.core.RetryPolicy;
+import benjaminkomen.jwiki.core.TitleCache;
+import benjaminkomen.jwiki.core.Wiki;
 import benjaminkomen.jwiki.dwrap.LogEntry;
 import benjaminkomen.jwiki.dwrap.ProtectedTitleEntry;
 import benjaminkomen.jwiki.dwrap.RecentChangesEntry;
+import benjaminkomen.jwiki.util.FL;
+import benjaminkomen.jwiki.util.GSONP;
 import benjaminkomen.jwiki.util.Tuple;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -194,6 +226,39 @@ public class MockQueryTests extends BaseMockTemplate {
         assertTrue(l.contains("Cats"));
     }
 
+    /**
+     * Tests lazy enumeration of all pages
+     */
+    @Test
+    public void testStreamAllPages() {
+        addResponse("mockAllPages");
+
+        List<String> l = FL.toArrayList(wiki.streamAllPages(null, false, false, -1, NS.MAIN).limit(2));
+
+        assertEquals(List.of("Test", "Foobar"), l);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    /**
+     * Tests prefetching of continuation queries
+     */
+    @Test
+    public void testPrefetchAllPages() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki prefetchWiki = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withContinuationPrefetch(true).build();
+
+        addResponse("mockAllPagesContinue");
+        addResponse("mockAllPages");
+
+        assertEquals(List.of("Apples", "Bananas", "Test", "Foobar", "Cats"), prefetchWiki.allPages(null, false, false, -1, NS.MAIN));
+        assertEquals(4, server.getRequestCount());
+
+        for (int i = 0; i < 3; i++) {
+            server.takeRequest(2, TimeUnit.SECONDS);
+        }
+        assertEquals("Dogs", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("apcontinue"));
+    }
+
     /**
      * Tests page searching
      */
@@ -222,4 +287,618 @@ public class MockQueryTests extends BaseMockTemplate {
         assertEquals(1, l.size());
         assertTrue(l.contains("File:TestTest.jpg"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that local duplicate files, which {@code formatversion=2} marks with {@code "shared": false}, are not
+     * reported as shared.
+     */
+    @Test
+    public void testGetSharedDuplicateOfV2() {
+        addResponse("mockSharedDuplicateFilesV2");
+
+        assertEquals(List.of("File:TestTest.jpg"), wiki.getSharedDuplicatesOf("File:Test.jpg"));
+    }
+
+    /**
+     * Tests asynchronous GET requests.
+     */
+    @Test
+    public void testBasicGETAsync() throws Exception {
+        addResponse("mockAllPages");
+
+        try (Response r = wiki.basicGETAsync("query", "list", "allpages").get(2, TimeUnit.SECONDS)) {
+            assertTrue(r.isSuccessful());
+            assertTrue(r.body().string().contains("Foobar"));
+        }
+    }
+
+    /**
+     * Tests that requests throttled by the server are retried after the requested pause, and that maxlag is sent.
+     */
+    @Test
+    public void testThrottledRetry() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki lagged = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withMaxlag(5).build();
+
+        server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        server.enqueue(new MockResponse().setHeader("MediaWiki-API-Error", "maxlag").setHeader("Retry-After", "0"));
+        addResponse("mockAllPages");
+
+        assertTrue(lagged.allPages(null, false, false, -1, NS.MAIN).contains("Foobar"));
+
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("maxlag")); // setUp, maxlag disabled by default
+        server.takeRequest(); // namespace info
+        for (int i = 0; i < 3; i++) {
+            assertEquals("5", server.takeRequest().getRequestUrl().queryParameter("maxlag"));
+        }
+    }
+
+    /**
+     * Tests that throttled requests are only retried as often as the RetryPolicy allows.
+     */
+    @Test
+    public void testThrottledRetryBudget() {
+        wiki.getWikiConfiguration().setRetryPolicy(RetryPolicy.builder().maxAttempts(2).initialDelay(Duration.ZERO).build());
+
+        for (int i = 0; i < 4; i++) {
+            server.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        }
+
+        assertThrows(IllegalStateException.class, () -> wiki.allPages(null, false, false, -1, NS.MAIN));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    /**
+     * Tests that a cancelled asynchronous request is not retried, so that it does not keep a dispatcher slot busy.
+     */
+    @Test
+    public void testCancelledRequestNotRetried() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki single = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withMaxRequestsPerHost(1).build();
+        single.getWikiConfiguration().setRetryPolicy(RetryPolicy.builder().initialDelay(Duration.ofSeconds(1)).jitter(0).build());
+
+        server.enqueue(new MockResponse().setResponseCode(502).setHeadersDelay(1, TimeUnit.SECONDS));
+        addResponse("mockAllPages");
+
+        CompletableFuture<Response> cancelled = single.basicGETAsync("query", "list", "allpages");
+        server.takeRequest(); // setUp
+        server.takeRequest(); // namespace info
+        assertNotNull(server.takeRequest(2, TimeUnit.SECONDS));
+        cancelled.cancel(true);
+
+        try (Response r = single.basicGETAsync("query", "list", "allpages").get(3, TimeUnit.SECONDS)) {
+            assertTrue(r.isSuccessful());
+        }
+    }
+
+    /**
+     * Tests that queries which still fail once the RetryPolicy gives up are reported, rather than returning partial
+     * results.
+     */
+    @Test
+    public void testFailedQueryThrows() {
+        wiki.getWikiConfiguration().setRetryPolicy(RetryPolicy.NEVER);
+
+        server.enqueue(new MockResponse().setResponseCode(502));
+        assertThrows(IllegalStateException.class, () -> wiki.search("GitHub", 5, NS.MAIN));
+
+        server.enqueue(new MockResponse().setResponseCode(502));
+        assertThrows(IllegalStateException.class, () -> MQuery.exists(wiki, List.of("Test")));
+    }
+
+    /**
+     * Tests that queries which failed with a transient server error are retried.
+     */
+    @Test
+    public void testRetryTransientError() {
+        wiki.getWikiConfiguration().setRetryPolicy(RetryPolicy.builder().initialDelay(Duration.ZERO).build());
+
+        server.enqueue(new MockResponse().setResponseCode(502));
+        addResponse("mockAllPages");
+
+        assertTrue(wiki.allPages(null, false, false, -1, NS.MAIN).contains("Foobar"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    /**
+     * Tests that concurrent identical queries share a single request.
+     */
+    @Test
+    public void testCoalescedQueries() throws Exception {
+        String allPages = readResponse("mockAllPages");
+        dispatch(request -> new MockResponse().setBody(allPages).setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(pool.submit(() -> wiki.allPages(null, false, false, -1, NS.MAIN)));
+            }
+
+            for (Future<List<String>> f : results) {
+                assertTrue(f.get(5, TimeUnit.SECONDS).contains("Foobar"));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(2, server.getRequestCount());
+    }
+
+    /**
+     * Tests that cached siteinfo is used instead of fetching namespaces when creating a Wiki.
+     */
+    @Test
+    public void testSiteInfoCache(@TempDir Path dir) {
+        addResponse("mockNSInfo");
+        new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withSiteInfoCache(dir, Duration.ofHours(1)).build();
+
+        Wiki cached = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withSiteInfoCache(dir, Duration.ofHours(1)).build();
+
+        assertEquals(2, server.getRequestCount());
+        assertEquals("File:Test.jpg", cached.convertIfNotInNS("Test.jpg", NS.FILE));
+        assertEquals(NS.FILE.getValue(), cached.whichNS("File:Test.jpg").getValue());
+    }
+
+    /**
+     * Tests that multi-title queries are split into batches no larger than the module allows.
+     */
+    @Test
+    public void testTextExtractBatches() {
+        List<Integer> batchSizes = new ArrayList<>();
+        dispatch(request -> {
+            List<String> titles = List.of(request.getRequestUrl().queryParameter("titles").split("\\|"));
+            batchSizes.add(titles.size());
+            return pagesResponse(titles, (title, page) -> page.addProperty("extract", "Extract of " + title));
+        });
+
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            titles.add("Page" + i);
+        }
+
+        Map<String, String> result = MQuery.getTextExtracts(wiki, titles);
+
+        assertEquals(45, result.size());
+        assertEquals("Extract of Page44", result.get("Page44"));
+        assertEquals(List.of(20, 20, 5), batchSizes);
+    }
+
+    /**
+     * Tests that queries whose url would be too long are sent as a POST.
+     */
+    @Test
+    public void testLongTitlesPost() {
+        List<String> methods = new ArrayList<>();
+        dispatch(request -> {
+            methods.add(request.getMethod());
+
+            String titles = null;
+            for (String field : request.getBody().readUtf8().split("&")) {
+                if (field.startsWith("titles=")) {
+                    titles = URLDecoder.decode(field.substring(7), StandardCharsets.UTF_8);
+                }
+            }
+
+            return pagesResponse(List.of(titles.split("\\|")));
+        });
+
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            titles.add("\u0416".repeat(40) + " " + i);
+        }
+
+        Map<String, Boolean> result = MQuery.exists(wiki, titles);
+
+        assertEquals(50, result.size());
+        assertTrue(result.get(titles.get(49)));
+        assertEquals(List.of("POST"), methods);
+    }
+
+    /**
+     * Tests that multi-title queries dispatched in parallel are merged completely.
+     */
+    @Test
+    public void testParallelExists() {
+        String nsInfo = readResponse("mockNSInfo");
+        dispatch(request -> {
+            String titles = request.getRequestUrl().queryParameter("titles");
+            return titles == null
+                    ? new MockResponse().setBody(nsInfo)
+                    : pagesResponse(List.of(titles.split("\\|")), (title, page) -> page.addProperty("missing", Integer.parseInt(title.substring(4)) % 2 == 1));
+        });
+
+        Wiki parallelWiki = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withQueryParallelism(4).build();
+
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            titles.add("Page" + i);
+        }
+
+        Map<String, Boolean> result = MQuery.exists(parallelWiki, titles);
+
+        assertEquals(120, result.size());
+        assertTrue(result.get("Page0"));
+        assertFalse(result.get("Page1"));
+        assertTrue(result.get("Page118"));
+        assertFalse(result.get("Page119"));
+    }
+
+    /**
+     * Tests that a multi-title query dispatched in parallel fails if one of its groups fails, rather than returning the
+     * results of the other groups.
+     */
+    @Test
+    public void testParallelExistsFailure() {
+        String nsInfo = readResponse("mockNSInfo");
+        String noPages = readResponse("mockNoPages");
+        dispatch(request -> {
+            String titles = request.getRequestUrl().queryParameter("titles");
+            return new MockResponse().setBody(titles == null ? nsInfo : titles.contains("Page60") ? "{" : noPages);
+        });
+
+        Wiki parallelWiki = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withQueryParallelism(4).build();
+
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            titles.add("Page" + i);
+        }
+
+        assertThrows(RuntimeException.class, () -> MQuery.exists(parallelWiki, titles));
+    }
+
+    /**
+     * Tests that {@code formatversion=2} replies, with arrays for pages and namespaces, are understood.
+     */
+    @Test
+    public void testFormatVersion2() throws Exception {
+        addResponse("mockNSInfoV2");
+        Wiki v2 = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).build();
+
+        assertEquals("File:Test.jpg", v2.convertIfNotInNS("Test.jpg", NS.FILE));
+        assertEquals(NS.FILE.getValue(), v2.whichNS("Image:Test.jpg").getValue());
+        assertEquals(NS.USER.getValue(), v2.whichNS("User:Foo").getValue());
+
+        addResponse("mockPageTextV2");
+        Map<String, String> text = MQuery.getPageText(v2, List.of("test", "Missing"));
+        assertEquals("Hello, World!", text.get("test"));
+        assertEquals("", text.get("Missing"));
+
+        addResponse("mockExistsV2");
+        Map<String, Boolean> exists = MQuery.exists(v2, List.of("Test", "Missing"));
+        assertTrue(exists.get("Test"));
+        assertFalse(exists.get("Missing"));
+
+        server.takeRequest(); // setUp
+        assertEquals("2", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("formatversion"));
+    }
+
+    /**
+     * Tests that page text which did not fit in one reply is fetched with continuation queries, rather than being
+     * returned empty.
+     */
+    @Test
+    public void testPageTextContinuation() throws Exception {
+        addResponse("mockPageTextContinue");
+        addResponse("mockPageTextContinue2");
+
+        Map<String, String> text = MQuery.getPageText(wiki, List.of("test", "Large"));
+        assertEquals("Hello, World!", text.get("test"));
+        assertEquals("Large text", text.get("Large"));
+
+        server.takeRequest(); // setUp
+        server.takeRequest(2, TimeUnit.SECONDS);
+        assertEquals("4|1234", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("rvcontinue"));
+    }
+
+    /**
+     * Tests that several prop modules are fetched in one fused query, and that their continuations are merged.
+     */
+    @Test
+    public void testGetProps() throws Exception {
+        addResponse("mockPropsContinue");
+        addResponse("mockProps");
+
+        Map<String, JsonObject> result = MQuery.getProps(wiki, List.of("test", "Foobar"), MQuery.PageProp.TEXT, MQuery.PageProp.CATEGORIES);
+
+        JsonObject test = result.get("test");
+        assertEquals("Hello, World!", GSONP.getContent(test.getAsJsonArray("revisions").get(0).getAsJsonObject(), "content"));
+        assertEquals(2, test.getAsJsonArray("categories").size());
+        assertEquals(test, result.get("Test"));
+        assertFalse(result.get("Foobar").has("categories"));
+
+        server.takeRequest(); // setUp
+        RecordedRequest first = server.takeRequest(2, TimeUnit.SECONDS);
+        assertEquals("revisions|categories", first.getRequestUrl().queryParameter("prop"));
+        assertEquals("2|Foo", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("clcontinue"));
+        assertEquals(3, server.getRequestCount());
+    }
+
+    /**
+     * Tests that a list and the properties of its pages are fetched with a generator, and that pages are only emitted
+     * once their batch is complete.
+     */
+    @Test
+    public void testStreamCategoryMembers() throws Exception {
+        addResponse("mockGeneratorContinue1");
+        addResponse("mockGeneratorContinue2");
+        addResponse("mockGenerator");
+
+        List<JsonObject> l = MQuery.streamCategoryMembers(wiki, "Fruit", MQuery.PageProp.TEXT, MQuery.PageProp.CATEGORIES)
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("Apples", "Bananas", "Cats"), FL.toArrayList(l.stream().map(jo -> GSONP.getString(jo, "title"))));
+        assertEquals(2, l.get(1).getAsJsonArray("categories").size());
+        assertEquals(1, l.get(1).getAsJsonArray("revisions").size());
+        assertFalse(l.get(0).has("categories"));
+
+        server.takeRequest(); // setUp
+        RecordedRequest first = server.takeRequest(2, TimeUnit.SECONDS);
+        assertEquals("categorymembers", first.getRequestUrl().queryParameter("generator"));
+        assertEquals("Category:Fruit", first.getRequestUrl().queryParameter("gcmtitle"));
+        assertEquals("50", first.getRequestUrl().queryParameter("gcmlimit"));
+        assertEquals("revisions|categories", first.getRequestUrl().queryParameter("prop"));
+        assertNull(first.getRequestUrl().queryParameter("titles"));
+
+        assertEquals("3|Foo", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("clcontinue"));
+        assertEquals("page|43415453|4", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("gcmcontinue"));
+    }
+
+    /**
+     * Tests that an interrupted enumeration with a checkpoint resumes where it stopped, and that the checkpoint is
+     * removed once the enumeration completes.
+     */
+    @Test
+    public void testCheckpointResume(@TempDir Path dir) throws Exception {
+        addResponse("mockNSInfo");
+        Wiki checkpointed = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withCheckpoints(dir).build();
+
+        addResponse("mockAllPagesContinue");
+        addResponse("mockAllPages");
+        Iterator<String> it = checkpointed.streamAllPages(null, false, false, -1, NS.MAIN, "allpages").iterator();
+        assertEquals(List.of("Apples", "Bananas", "Test"), List.of(it.next(), it.next(), it.next()));
+        assertTrue(Files.exists(dir.resolve("allpages.json")));
+
+        addResponse("mockAllPages");
+        List<String> resumed = FL.toArrayList(checkpointed.streamAllPages(null, false, false, -1, NS.MAIN, "allpages"));
+        assertEquals("Test", resumed.get(0));
+        assertFalse(resumed.contains("Apples"));
+        assertFalse(Files.exists(dir.resolve("allpages.json")));
+
+        for (int i = 0; i < 4; i++) {
+            server.takeRequest(); // namespaces of both Wikis and the interrupted enumeration
+        }
+        assertEquals("Dogs", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("apcontinue"));
+    }
+
+    /**
+     * Tests that a time range is split into disjoint slices, and that the results of the slices are merged in order.
+     */
+    @Test
+    public void testPartitionedLogs() {
+        List<String> ranges = new ArrayList<>();
+        dispatch(request -> logEventsResponse(request, ranges));
+
+        Instant start = Instant.parse("2020-01-01T00:00:00Z");
+        List<LogEntry> l = wiki.getLogs("Test", null, null, start, start.plusSeconds(300), 3);
+
+        assertEquals(List.of(Instant.parse("2020-01-01T00:05:00Z"), Instant.parse("2020-01-01T00:03:19Z"), Instant.parse("2020-01-01T00:01:39Z")),
+                FL.toArrayList(l.stream().map(LogEntry::getTimestamp)));
+        assertEquals(Set.of("2020-01-01T00:00:00Z/2020-01-01T00:01:39Z", "2020-01-01T00:01:40Z/2020-01-01T00:03:19Z",
+                "2020-01-01T00:03:20Z/2020-01-01T00:05:00Z"), new HashSet<>(ranges));
+    }
+
+    /**
+     * Tests that time ranges of a few seconds are split into slices of whole seconds, none of them empty.
+     */
+    @Test
+    public void testPartitionedShortRange() {
+        List<String> ranges = new ArrayList<>();
+        dispatch(request -> logEventsResponse(request, ranges));
+
+        Instant start = Instant.parse("2020-01-01T00:00:00Z");
+        wiki.getLogs("Test", null, null, start, start.plusSeconds(1), 2);
+        assertEquals(Set.of("2020-01-01T00:00:00Z/2020-01-01T00:00:00Z", "2020-01-01T00:00:01Z/2020-01-01T00:00:01Z"), new HashSet<>(ranges));
+
+        ranges.clear();
+        wiki.getLogs("Test", null, null, start, start.plusSeconds(1), 5);
+        assertEquals(2, ranges.size());
+
+        ranges.clear();
+        wiki.getLogs("Test", null, null, start, start.plusSeconds(2), 2);
+        assertEquals(Set.of("2020-01-01T00:00:00Z/2020-01-01T00:00:00Z", "2020-01-01T00:00:01Z/2020-01-01T00:00:02Z"), new HashSet<>(ranges));
+
+        ranges.clear();
+        wiki.getLogs("Test", null, null, start, start, 3);
+        assertEquals(List.of("2020-01-01T00:00:00Z/2020-01-01T00:00:00Z"), ranges);
+    }
+
+    /**
+     * Tests that the slices of a partitioned enumeration are queried at the same time with the default settings.
+     */
+    @Test
+    public void testPartitionedLogsOverlap() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        dispatch(request -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            return logEventsResponse(request, new ArrayList<>());
+        });
+
+        Instant start = Instant.parse("2020-01-01T00:00:00Z");
+        assertEquals(4, wiki.getLogs("Test", null, null, start, start.plusSeconds(300), 4).size());
+        assertTrue(maxActive.get() > 1, "At most " + maxActive.get() + " slice was queried at a time");
+    }
+
+    /**
+     * Tests that the slices of a partitioned enumeration are only fetched as they are consumed, a bounded number ahead.
+     */
+    @Test
+    public void testPartitionedLogsAreLazy() throws InterruptedException {
+        List<String> ranges = new ArrayList<>();
+        dispatch(request -> logEventsResponse(request, ranges));
+
+        Instant start = Instant.parse("2020-01-01T00:00:00Z");
+        try (Stream<LogEntry> s = wiki.streamLogs("Test", null, null, start, start.plusSeconds(300), 100)) {
+            assertTrue(ranges.isEmpty());
+            assertEquals(Instant.parse("2020-01-01T00:05:00Z"), s.findFirst().get().getTimestamp());
+        }
+
+        Thread.sleep(500);
+        synchronized (ranges) {
+            assertTrue(ranges.size() <= Conf.PARTITION_PARALLELISM, "Fetched " + ranges.size() + " slices");
+        }
+    }
+
+    /**
+     * Answers a log event query with a single entry, timestamped with the query's {@code lestart}, and records the
+     * time range of the query.
+     *
+     * @param request The log event query
+     * @param ranges  Receives the time range of each query, as {@code leend/lestart}.
+     * @return The MockResponse
+     */
+    private static MockResponse logEventsResponse(RecordedRequest request, List<String> ranges) {
+        String start = request.getRequestUrl().queryParameter("lestart");
+        String end = request.getRequestUrl().queryParameter("leend");
+        synchronized (ranges) {
+            ranges.add(end + "/" + start);
+        }
+
+        JsonObject entry = new JsonObject();
+        entry.addProperty("title", "Test");
+        entry.addProperty("timestamp", start);
+        JsonArray logevents = new JsonArray();
+        logevents.add(entry);
+
+        return queryResponse("logevents", logevents);
+    }
+
+    /**
+     * Tests that cached page text is reused while the page is unchanged, and downloaded again once it changes.
+     */
+    @Test
+    public void testPageTextCache() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki cached = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withPageTextCache(1024 * 1024).build();
+
+        addResponse("mockPageTextRev100");
+        assertEquals("Text of 100", cached.getPageText("Test"));
+        addResponse("mockPageInfoRev100");
+        assertEquals("Text of 100", cached.getPageText("Test"));
+        addResponse("mockPageInfoRev101");
+        addResponse("mockPageTextRev101");
+        assertEquals("Text of 101", cached.getPageText("Test"));
+
+        server.takeRequest(); // setUp
+        server.takeRequest(); // namespace info
+        List<String> props = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            props.add(server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("prop"));
+        }
+        assertEquals(List.of("revisions", "info", "info", "revisions"), props);
+        assertTrue(cached.getWikiConfiguration().getPageTextCache().size() > 0);
+    }
+
+    /**
+     * Tests that polled recent changes are published once each, and that each poll continues from the previous one.
+     * Changes which only became visible after later ones, with a lower id at or before the last timestamp seen, are
+     * still published.
+     */
+    @Test
+    public void testRecentChangesPoller() throws Exception {
+        List<String> changed = new ArrayList<>();
+        RecentChangesPoller poller = new RecentChangesPoller(wiki, Duration.ofMinutes(1)).addListener(changed::add);
+
+        addResponse("mockRecentChangesPoll1");
+        poller.poll();
+        addResponse("mockRecentChangesPoll2");
+        poller.poll();
+
+        assertEquals(List.of("Test", "Foo", "Bar", "Early", "Late", "Baz"), changed);
+
+        server.takeRequest(); // setUp
+        assertEquals("newer", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("rcdir"));
+        assertEquals("2019-12-31T23:59:02Z", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("rcstart"));
+    }
+
+    /**
+     * Tests that the title cache resolves known titles locally and only queries unknown ones.
+     */
+    @Test
+    public void testTitleCache() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki cached = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withTitleCache(1000).build();
+        server.takeRequest();
+        server.takeRequest();
+
+        addResponse("mockResolveRedirects1");
+        assertEquals(Map.of("foo", "Bar", "Foo", "Bar", "Baz", "Baz"), MQuery.resolveRedirects(cached, List.of("foo", "Baz")));
+        server.takeRequest();
+
+        addResponse("mockResolveRedirects2");
+        Map<String, String> result = MQuery.resolveRedirects(cached, List.of("foo", "Baz", "Qux", "Gone"));
+        assertEquals(Map.of("foo", "Bar", "Baz", "Baz", "Qux", "Qux", "Gone", "Gone"), result);
+        assertEquals("Qux|Gone", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("titles"));
+
+        TitleCache cache = cached.getWikiConfiguration().getTitleCache();
+        assertNull(cache.resolve("Gone"));
+        cache.invalidate("foo");
+        assertNull(cache.resolve("Foo"));
+        assertEquals("Baz", cache.resolve("Baz"));
+    }
+
+    /**
+     * Tests that the title cache forgets the least recently used titles once it is full.
+     */
+    @Test
+    public void testTitleCacheBound() throws Exception {
+        addResponse("mockNSInfo");
+        Wiki cached = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withTitleCache(1).build();
+
+        addResponse("mockResolveRedirects1");
+        assertEquals(Map.of("foo", "Bar", "Foo", "Bar", "Baz", "Baz"), MQuery.resolveRedirects(cached, List.of("foo", "Baz")));
+
+        TitleCache cache = cached.getWikiConfiguration().getTitleCache();
+        assertEquals(1, cache.size());
+        assertEquals("Baz", cache.resolve("Baz"));
+        assertNull(cache.resolve("Foo"));
+    }
+
+    /**
+     * Tests that the existence oracle answers titles in loaded namespaces locally and queries the others once.
+     */
+    @Test
+    public void testExistenceOracle() throws Exception {
+        addResponse("mockAllPages");
+        ExistenceOracle oracle = new ExistenceOracle(wiki, 1000, 0.01).load(NS.MAIN);
+
+        addResponse("mockExistenceOracle");
+        Map<String, Boolean> result = oracle.exists(List.of("Test", "Cats", "Nope", "test", "File:Missing"));
+        assertEquals(Map.of("Test", true, "Cats", true, "Nope", false, "test", true, "File:Missing", false), result);
+
+        server.takeRequest(); // setUp
+        server.takeRequest(); // allpages
+        assertEquals("test|File:Missing", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("titles"));
+
+        assertFalse(oracle.exists("File:Missing"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(1, oracle.missingCount());
+
+        oracle.invalidate("File:Missing");
+        assertEquals(0, oracle.missingCount());
+
+        // a title in a loaded namespace was implicitly missing, so it has to be queried again once it changes
+        oracle.invalidate("Nope");
+        server.enqueue(new MockResponse().setBody("{\"query\": {\"pages\": [{\"pageid\": 5, \"ns\": 0, \"title\": \"Nope\"}]}}"));
+        assertTrue(oracle.exists("Nope"));
+        assertEquals("Nope", server.takeRequest(2, TimeUnit.SECONDS).getRequestUrl().queryParameter("titles"));
+    }
+}
@@ -0,0 +1,73 @@
+package benjaminkomen.jwiki.test;
+
+import benjaminkomen.jwiki.util.GSONP;
+import com.google.gson.JsonObject;
+import okhttp3.mockwebserver.MockResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests decoding of API responses straight from the response stream.
+ *
+ * @author Fastily
+ */
+public class MockResponseParsingTests extends BaseMockTemplate {
+    /**
+     * Tests that top-level values which were not asked for are skipped, however deeply they are nested, and that the
+     * others are decoded completely.
+     */
+    @Test
+    public void testSkipUnknownKeys() throws IOException {
+        addResponse("mockUnknownKeys");
+
+        JsonObject result = GSONP.parseResponseBody(wiki.basicGET("query").body(), List.of("query", "batchcomplete", "continue"));
+
+        assertEquals(Set.of("query", "batchcomplete"), result.keySet());
+        assertTrue(result.get("batchcomplete").getAsBoolean());
+        assertEquals("Test", GSONP.getString(result.getAsJsonObject("query").getAsJsonArray("pages").get(0).getAsJsonObject(), "title"));
+    }
+
+    /**
+     * Tests that all top-level values are kept if no keys are given.
+     */
+    @Test
+    public void testKeepAllKeys() throws IOException {
+        addResponse("mockUnknownKeys");
+
+        JsonObject result = GSONP.parseResponseBody(wiki.basicGET("query").body(), null);
+
+        assertEquals(Set.of("warnings", "batchcomplete", "servedby", "query", "limits"), result.keySet());
+        assertEquals("value", result.getAsJsonObject("warnings").getAsJsonArray("nested").get(0).getAsJsonArray().get(1)
+                .getAsJsonObject().getAsJsonArray("deep").get(0).getAsString());
+    }
+
+    /**
+     * Tests that an error reply is decoded if {@code error} is asked for.
+     */
+    @Test
+    public void testErrorReply() throws IOException {
+        addResponse("mockErrorReply");
+
+        JsonObject result = GSONP.parseResponseBody(wiki.basicGET("query").body(), List.of("query", "error"));
+
+        assertEquals(Set.of("error"), result.keySet());
+        assertEquals("badtoken", GSONP.getString(result.getAsJsonObject("error"), "code"));
+    }
+
+    /**
+     * Tests that truncated (including within a skipped value), empty and non-object bodies are reported as an
+     * IOException.
+     */
+    @Test
+    public void testInvalidBody() {
+        for (String body : List.of("{\"query\": {\"pages\": [{\"title\": \"Te", "{\"warnings\": {\"main\": [", "", "[]", "<html></html>")) {
+            server.enqueue(new MockResponse().setBody(body));
+            assertThrows(IOException.class, () -> GSONP.parseResponseBody(wiki.basicGET("query").body(), List.of("query")), body);
+        }
+    }
+}
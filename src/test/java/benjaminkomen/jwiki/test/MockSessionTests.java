@@ -0,0 +1,86 @@
+package benjaminkomen.jwiki.test;
+
+import benjaminkomen.jwiki.core.Wiki;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests saving and restoring of login sessions.
+ *
+ * @author Fastily
+ */
+public class MockSessionTests extends BaseMockTemplate {
+    /**
+     * Tests that a saved session is restored with a single validating request, and can be saved again.
+     */
+    @Test
+    public void testRestoreSession(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("session.json");
+        Files.writeString(file, String.format("{\"endpoint\": \"%s\", \"uname\": \"Test\", \"cookies\": {\"%s\": {\"session\": \"abc123\"}}}",
+                server.url("/w/api.php"), server.getHostName()));
+
+        addResponse("mockNSInfo");
+        addResponse("mockSessionInfo");
+        Wiki restored = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withSession(file).build();
+
+        assertEquals("Test", restored.whoami());
+        assertTrue(restored.getWikiConfiguration().isBot());
+        assertEquals("66f29bb987b695123a000a1bc321ff9876a44444+\\", restored.getWikiConfiguration().getToken());
+
+        server.takeRequest(); // setUp
+        server.takeRequest(); // namespaces
+        RecordedRequest validation = server.takeRequest(2, TimeUnit.SECONDS);
+        assertEquals("userinfo|tokens", validation.getRequestUrl().queryParameter("meta"));
+        assertEquals("session=abc123", validation.getHeader("Cookie"));
+        assertEquals(3, server.getRequestCount());
+
+        Path saved = dir.resolve("saved.json");
+        assertTrue(restored.saveSession(saved));
+
+        JsonObject session = JsonParser.parseString(Files.readString(saved)).getAsJsonObject();
+        assertEquals("Test", session.get("uname").getAsString());
+        assertEquals("abc123", session.getAsJsonObject("cookies").getAsJsonObject(server.getHostName()).get("session").getAsString());
+    }
+
+    /**
+     * Tests that an expired session falls back to logging in, and that the new session is saved privately.
+     */
+    @Test
+    public void testExpiredSessionIsReplaced(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("session.json");
+        Files.writeString(file, String.format("{\"endpoint\": \"%s\", \"uname\": \"Test\", \"cookies\": {\"%s\": {\"session\": \"expired\"}}}",
+                server.url("/w/api.php"), server.getHostName()));
+
+        addResponse("mockNSInfo");
+        server.enqueue(new MockResponse().setBody("{\"query\": {\"userinfo\": {\"id\": 0, \"name\": \"127.0.0.1\", \"anon\": true}}}"));
+        addResponse("mockTokenNotLoggedIn");
+        addResponse("mockLoginSuccess");
+        addResponse("mockSessionInfo");
+        Wiki wiki = new Wiki.Builder().withApiEndpoint(server.url("/w/api.php")).withSession(file).withLogin("Test", "password").build();
+
+        assertEquals("Test", wiki.whoami());
+        assertEquals(wiki.getWikiConfiguration().getToken(), JsonParser.parseString(Files.readString(file)).getAsJsonObject().get("token").getAsString());
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(file));
+        }
+    }
+
+    /**
+     * Tests that anonymous Wiki objects have no session to save.
+     */
+    @Test
+    public void testSaveAnonymousSession(@TempDir Path dir) {
+        assertFalse(wiki.saveSession(dir.resolve("session.json")));
+    }
+}